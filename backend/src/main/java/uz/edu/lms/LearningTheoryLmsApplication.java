@@ -2,8 +2,10 @@ package uz.edu.lms;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LearningTheoryLmsApplication {
 
     public static void main(String[] args) {
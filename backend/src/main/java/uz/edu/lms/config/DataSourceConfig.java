@@ -0,0 +1,80 @@
+package uz.edu.lms.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import uz.edu.lms.datasource.ReadWriteRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The primary pool from {@code spring.datasource}, optional read replica pools, and
+ * the routing data source in front of them that JPA and JDBC use.
+ */
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            @Value("${datasource.replicas.urls:}") String urls,
+            @Value("${datasource.replicas.username:}") String username,
+            @Value("${datasource.replicas.password:}") String password,
+            @Value("${datasource.replicas.maximum-pool-size:10}") int maximumPoolSize,
+            @Value("${datasource.replicas.connection-timeout:PT2S}") Duration connectionTimeout,
+            @Value("${datasource.routing.lag-query:}") String lagQuery,
+            @Value("${datasource.routing.max-lag:PT5S}") Duration maxLag,
+            @Value("${datasource.routing.sticky-window:PT5S}") Duration stickyWindow) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            replica.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            // Start even when the replica is down; the health check takes it out of rotation
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        if (!replicas.isEmpty()) {
+            log.info("Routing read-only transactions to {} read replicas", replicas.size());
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas, lagQuery, maxLag, stickyWindow);
+    }
+
+    /**
+     * Connections are opened on first use, once the transaction's read-only flag is
+     * known, so the routing data source can pick the pool.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,21 @@
+package uz.edu.lms.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * DTOs with a {@code @JsonFilter} serialize every property unless a response
+     * supplies its own filter, as the sparse lesson listings do.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer defaultPropertyFilter() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
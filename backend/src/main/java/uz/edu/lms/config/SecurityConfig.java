@@ -3,6 +3,7 @@ package uz.edu.lms.config;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -37,6 +38,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/**", "/h2-console/**").permitAll()
                         .requestMatchers("/api/lessons", "/api/lessons/**").permitAll()  // Allow GET for all, POST/DELETE restricted by @PreAuthorize
                         .requestMatchers("/api/videos/**", "/api/files/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/courses/*/outline").permitAll()
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -0,0 +1,45 @@
+package uz.edu.lms.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uz.edu.lms.dto.BulkImportResult;
+import uz.edu.lms.entity.User;
+import uz.edu.lms.service.BulkTransferService;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/bulk")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class BulkController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final BulkTransferService bulkTransferService;
+
+    /**
+     * Imports courses, modules, lessons and quizzes from an NDJSON body. Courses are
+     * assigned to the caller.
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasAnyRole('TEACHER', 'ADMIN')")
+    public ResponseEntity<BulkImportResult> importRecords(HttpServletRequest request,
+                                                          @AuthenticationPrincipal User user) throws IOException {
+        return ResponseEntity.ok(bulkTransferService.importRecords(request.getInputStream(), user.getId()));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('TEACHER', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportRecords(@RequestParam(required = false) Long courseId) {
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(out -> bulkTransferService.exportRecords(courseId, out));
+    }
+}
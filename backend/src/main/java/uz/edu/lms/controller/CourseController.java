@@ -0,0 +1,36 @@
+package uz.edu.lms.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import uz.edu.lms.dto.CourseOutline;
+import uz.edu.lms.service.CourseService;
+import uz.edu.lms.service.LessonCache;
+
+@RestController
+@RequestMapping("/api/courses")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class CourseController {
+
+    private final CourseService courseService;
+    private final LessonCache lessonCache;
+
+    /**
+     * Course, modules, lesson and quiz summaries in one response, revalidated against
+     * the catalog ETag.
+     */
+    @GetMapping("/{id}/outline")
+    public ResponseEntity<CourseOutline> getOutline(@PathVariable Long id, WebRequest webRequest) {
+        String etag = lessonCache.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(courseService.getOutline(id));
+    }
+}
@@ -1,13 +1,27 @@
 package uz.edu.lms.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+import uz.edu.lms.entity.MediaJob;
+import uz.edu.lms.entity.StorageUsage;
 import uz.edu.lms.service.FileUploadService;
+import uz.edu.lms.service.MediaJobService;
+import uz.edu.lms.service.OrphanCollectorService;
+import uz.edu.lms.service.QuotaService;
+import uz.edu.lms.service.ResumableUploadService;
+import uz.edu.lms.service.StreamingUploadService;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,44 +31,248 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class FileUploadController {
 
+    // Uploads made with ?purpose=lesson are garbage collected once no lesson references them
+    private static final String LESSON_PURPOSE = "lesson";
+
     private final FileUploadService fileUploadService;
+    private final ResumableUploadService resumableUploadService;
+    private final StreamingUploadService streamingUploadService;
+    private final MediaJobService mediaJobService;
+    private final OrphanCollectorService orphanCollectorService;
+    private final QuotaService quotaService;
 
+    // Uploads are charged to the caller, so anonymous ones would escape the quotas
     @PostMapping("/upload/video")
-    public ResponseEntity<Map<String, String>> uploadVideo(@RequestParam("file") MultipartFile file) {
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> uploadVideo(HttpServletRequest request) throws IOException {
+        return upload(request, "videos");
+    }
+
+    @PostMapping("/upload/pdf")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> uploadPdf(HttpServletRequest request) throws IOException {
+        return upload(request, "pdfs");
+    }
+
+    @DeleteMapping("/delete")
+    public ResponseEntity<Void> deleteFile(@RequestParam String filePath) {
         try {
-            log.info("Uploading video: {}, size: {} bytes", file.getOriginalFilename(), file.getSize());
-            String filePath = fileUploadService.uploadFile(file, "videos");
-            log.info("Video uploaded successfully: {}", filePath);
-            Map<String, String> response = new HashMap<>();
-            response.put("filePath", filePath);
-            response.put("fileName", file.getOriginalFilename());
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Error uploading video: {}", file.getOriginalFilename(), e);
+            fileUploadService.deleteFile(filePath);
+            return ResponseEntity.ok().build();
+        } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    @PostMapping("/upload/pdf")
-    public ResponseEntity<Map<String, String>> uploadPdf(@RequestParam("file") MultipartFile file) {
+    @GetMapping("/usage")
+    @PreAuthorize("hasAnyRole('TEACHER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> getMyUsage() {
+        QuotaService.Owner owner = quotaService.resolveOwner(null);
+        if (owner.teacherId() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return getUsage("teacher", owner.teacherId());
+    }
+
+    @GetMapping("/usage/{scope}/{id}")
+    @PreAuthorize("hasAnyRole('TEACHER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> getUsage(@PathVariable String scope, @PathVariable Long id) {
+        StorageUsage.Scope usageScope = switch (scope) {
+            case "teacher" -> StorageUsage.Scope.TEACHER;
+            case "course" -> StorageUsage.Scope.COURSE;
+            default -> throw new IllegalArgumentException("Unknown usage scope: " + scope);
+        };
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(quotaService.getUsage(usageScope, id));
+    }
+
+    @GetMapping("/gc/stats")
+    @PreAuthorize("hasAnyRole('TEACHER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> gcStats() {
+        return ResponseEntity.ok(orphanCollectorService.stats());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable Long id) {
+        MediaJob job = mediaJobService.getJob(id);
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", job.getId());
+        response.put("assetKey", job.getAssetKey());
+        response.put("status", job.getStatus());
+        response.put("completedStages", job.getCompletedStages().isEmpty()
+                ? new String[0]
+                : job.getCompletedStages().split(","));
+        response.put("stages", mediaJobService.stagesFor(job.getAssetKey()).stream().map(Enum::name).toList());
+        response.put("attempts", job.getAttempts());
+        response.put("lastError", job.getLastError());
+        response.put("duration", job.getDuration());
+        response.put("createdAt", job.getCreatedAt());
+        response.put("updatedAt", job.getUpdatedAt());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(response);
+    }
+
+    @PostMapping("/uploads")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> createResumableUpload(
+            @RequestParam String folder,
+            @RequestParam String fileName,
+            @RequestParam(required = false) Long courseId,
+            @RequestHeader("Upload-Length") long length) throws IOException {
+        QuotaService.Owner owner = quotaService.resolveOwner(courseId);
+        quotaService.checkQuota(owner, length);
+        ResumableUploadService.UploadSession session = resumableUploadService.create(folder, fileName, length, owner);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .location(URI.create("/api/files/uploads/" + session.getId()))
+                .header("Upload-Offset", "0")
+                .body(toUploadResponse(session));
+    }
+
+    @RequestMapping(value = "/uploads/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getResumableUploadOffset(@PathVariable String id) {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header("Upload-Offset", String.valueOf(session.contiguousOffset()))
+                .header("Upload-Length", String.valueOf(session.getLength()))
+                .build();
+    }
+
+    @GetMapping("/uploads/{id}")
+    public ResponseEntity<Map<String, Object>> getResumableUpload(@PathVariable String id) {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(toUploadResponse(session));
+    }
+
+    @PatchMapping("/uploads/{id}")
+    public ResponseEntity<Void> uploadChunk(
+            @PathVariable String id,
+            @RequestHeader("Upload-Offset") long offset,
+            @RequestHeader(value = "Upload-Checksum", required = false) String checksum,
+            HttpServletRequest request) throws IOException {
+        long uploadOffset = resumableUploadService.writeChunk(
+                id, offset, request.getContentLengthLong(), checksum, request.getInputStream());
+        return ResponseEntity.noContent()
+                .header("Upload-Offset", String.valueOf(uploadOffset))
+                .build();
+    }
+
+    @PostMapping("/uploads/{id}/complete")
+    public ResponseEntity<Map<String, Object>> completeResumableUpload(
+            @PathVariable String id,
+            @RequestParam(required = false) String purpose) throws IOException {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(id);
+        String fileName = session.getFileName();
+        long startedAt = System.currentTimeMillis();
+        // Checked again now that the bytes are stored: sessions created together may not all fit
+        String filePath;
+        try (QuotaService.Reservation ignored = quotaService.reserve(
+                new QuotaService.Owner(session.getTeacherId(), session.getCourseId()), session.getLength())) {
+            filePath = resumableUploadService.complete(id);
+        }
+        orphanCollectorService.recordUpload(filePath, LESSON_PURPOSE.equals(purpose), startedAt);
+        Map<String, Object> response = new HashMap<>();
+        response.put("filePath", filePath);
+        response.put("fileName", fileName);
+        addJobInfo(response, filePath);
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/uploads/{id}")
+    public ResponseEntity<Void> abortResumableUpload(@PathVariable String id) throws IOException {
+        resumableUploadService.abort(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<Map<String, Object>> upload(HttpServletRequest request, String folder) throws IOException {
+        // The declared length is reserved before any of the body is read and grown while streaming
+        QuotaService.Owner owner = quotaService.resolveOwner(courseIdParameter(request));
+        try (QuotaService.Reservation reservation = quotaService.reserve(owner, request.getContentLengthLong())) {
+            return upload(request, folder, owner, reservation);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> upload(HttpServletRequest request, String folder,
+                                                       QuotaService.Owner owner,
+                                                       QuotaService.Reservation reservation) throws IOException {
+        boolean forLesson = LESSON_PURPOSE.equals(queryParameter(request, "purpose"));
+        long startedAt = System.currentTimeMillis();
+
+        Map<String, Object> response = new HashMap<>();
+        if (streamingUploadService.isEnabled()) {
+            StreamingUploadService.StoredUpload stored = streamingUploadService.upload(request, folder, "file", owner,
+                    reservation);
+            response.put("filePath", stored.filePath());
+            response.put("fileName", stored.fileName());
+            response.put("size", stored.size());
+            response.put("sha256", stored.sha256());
+            orphanCollectorService.recordUpload(stored.filePath(), forLesson, startedAt);
+            addJobInfo(response, stored.filePath());
+            return ResponseEntity.ok(response);
+        }
+
+        if (!(request instanceof MultipartHttpServletRequest multipartRequest)
+                || multipartRequest.getFile("file") == null) {
+            throw new IllegalArgumentException("Multipart request has no 'file' part");
+        }
+        MultipartFile file = multipartRequest.getFile("file");
+        reservation.ensure(file.getSize());
         try {
-            String filePath = fileUploadService.uploadFile(file, "pdfs");
-            Map<String, String> response = new HashMap<>();
+            log.info("Uploading {}: {}, size: {} bytes", folder, file.getOriginalFilename(), file.getSize());
+            String filePath = fileUploadService.uploadFile(file, folder, owner);
+            log.info("File uploaded successfully: {}", filePath);
+            orphanCollectorService.recordUpload(filePath, forLesson, startedAt);
             response.put("filePath", filePath);
             response.put("fileName", file.getOriginalFilename());
+            addJobInfo(response, filePath);
             return ResponseEntity.ok(response);
         } catch (IOException e) {
+            log.error("Error uploading file: {}", file.getOriginalFilename(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    @DeleteMapping("/delete")
-    public ResponseEntity<Void> deleteFile(@RequestParam String filePath) {
+    /**
+     * Reads courseId from the query string. getParameter() would make the container
+     * parse the multipart body, which the streaming upload has to read itself.
+     */
+    private Long courseIdParameter(HttpServletRequest request) {
+        String courseId = queryParameter(request, "courseId");
         try {
-            fileUploadService.deleteFile(filePath);
-            return ResponseEntity.ok().build();
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+            return courseId != null ? Long.valueOf(courseId) : null;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid courseId: " + courseId);
         }
     }
+
+    private static String queryParameter(HttpServletRequest request, String name) {
+        if (request.getQueryString() == null) {
+            return null;
+        }
+        return UriComponentsBuilder.newInstance().query(request.getQueryString()).build()
+                .getQueryParams().getFirst(name);
+    }
+
+    private void addJobInfo(Map<String, Object> response, String filePath) {
+        mediaJobService.findJob(filePath).ifPresent(job -> {
+            response.put("jobId", job.getId());
+            response.put("processingStatus", job.getStatus());
+        });
+    }
+
+    private Map<String, Object> toUploadResponse(ResumableUploadService.UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("folder", session.getFolder());
+        response.put("fileName", session.getFileName());
+        response.put("length", session.getLength());
+        response.put("offset", session.contiguousOffset());
+        response.put("receivedBytes", session.receivedBytes());
+        response.put("receivedRanges", session.getRanges());
+        return response;
+    }
 }
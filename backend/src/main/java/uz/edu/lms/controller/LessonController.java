@@ -1,15 +1,30 @@
 package uz.edu.lms.controller;
 
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import uz.edu.lms.dto.CreateLessonRequest;
+import uz.edu.lms.dto.CursorPage;
+import uz.edu.lms.dto.LessonSearchResult;
+import uz.edu.lms.dto.TranscriptPage;
 import uz.edu.lms.dto.VideoLessonDTO;
+import uz.edu.lms.service.LessonCache;
+import uz.edu.lms.repository.LessonSort;
+import uz.edu.lms.service.LessonSearchService;
+import uz.edu.lms.service.LessonTranscriptService;
 import uz.edu.lms.service.VideoLessonService;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/lessons")
@@ -18,6 +33,9 @@ import java.util.List;
 public class LessonController {
 
     private final VideoLessonService videoLessonService;
+    private final LessonCache lessonCache;
+    private final LessonSearchService lessonSearchService;
+    private final LessonTranscriptService lessonTranscriptService;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('TEACHER', 'ADMIN')")
@@ -43,26 +61,85 @@ public class LessonController {
         }
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<LessonSearchResult> searchLessons(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(lessonSearchService.search(query, page, size));
+    }
+
+    @GetMapping("/search/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> searchStats() {
+        return ResponseEntity.ok(lessonSearchService.stats());
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<VideoLessonDTO> getLessonById(@PathVariable Long id) {
+    public ResponseEntity<VideoLessonDTO> getLessonById(@PathVariable Long id, WebRequest webRequest) {
+        String etag = lessonCache.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         try {
             VideoLessonDTO lesson = videoLessonService.getLessonById(id);
-            return ResponseEntity.ok(lesson);
+            return revalidated(etag).body(lesson);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    @GetMapping("/{id}/transcript")
+    public ResponseEntity<TranscriptPage> getTranscript(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20000") int limit,
+            WebRequest webRequest) {
+        String etag = lessonCache.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidated(etag).body(lessonTranscriptService.getPage(id, offset, limit));
+    }
+
     @GetMapping
-    public ResponseEntity<List<VideoLessonDTO>> getAllLessons() {
-        List<VideoLessonDTO> lessons = videoLessonService.getAllLessons();
-        return ResponseEntity.ok(lessons);
+    public ResponseEntity<MappingJacksonValue> getLessons(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "createdAt") String sort,
+            @RequestParam(required = false) Long courseId,
+            @RequestParam(required = false) Long moduleId,
+            @RequestParam(required = false) Long teacherId,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        String etag = lessonCache.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        Set<String> fieldSet = VideoLessonService.parseFields(fields);
+        CursorPage<VideoLessonDTO> page = videoLessonService.getLessons(
+                LessonSort.fromParameter(sort), cursor, limit, courseId, moduleId, teacherId, fieldSet);
+        return revalidated(etag).body(sparse(page, fieldSet));
     }
 
     @GetMapping("/course/{courseId}")
-    public ResponseEntity<List<VideoLessonDTO>> getLessonsByCourse(@PathVariable Long courseId) {
-        List<VideoLessonDTO> lessons = videoLessonService.getLessonsByCourseId(courseId);
-        return ResponseEntity.ok(lessons);
+    public ResponseEntity<MappingJacksonValue> getLessonsByCourse(
+            @PathVariable Long courseId,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        String etag = lessonCache.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        Set<String> fieldSet = VideoLessonService.parseFields(fields);
+        List<VideoLessonDTO> lessons = videoLessonService.getLessonsByCourseId(courseId, fieldSet);
+        return revalidated(etag).body(sparse(lessons, fieldSet));
+    }
+
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(lessonCache.stats());
     }
 
     @DeleteMapping("/{id}")
@@ -75,4 +152,27 @@ public class LessonController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Serializes only the requested lesson properties; without {@code fields} every
+     * property is written.
+     */
+    private static MappingJacksonValue sparse(Object body, Set<String> fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(new SimpleFilterProvider().addFilter(VideoLessonDTO.FIELDS_FILTER, fields != null
+                ? SimpleBeanPropertyFilter.filterOutAllExcept(fields)
+                : SimpleBeanPropertyFilter.serializeAll()));
+        return value;
+    }
+
+    /**
+     * Lesson responses embed per-user signed URLs: they may be stored by the browser
+     * only, and must be revalidated against the catalog ETag before reuse.
+     */
+    private static ResponseEntity.BodyBuilder revalidated(String etag) {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.AUTHORIZATION);
+    }
 }
@@ -1,19 +1,22 @@
 package uz.edu.lms.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import uz.edu.lms.service.EgressScheduler;
+import uz.edu.lms.service.MediaCatalogService;
+import uz.edu.lms.service.MediaSegmentCache;
+import uz.edu.lms.security.MediaUrlSigner;
+import uz.edu.lms.service.MediaStreamService;
+import uz.edu.lms.storage.MetadataStore;
+import uz.edu.lms.storage.StorageBackend;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 
 @RestController
@@ -21,22 +24,21 @@ import java.util.*;
 @RequiredArgsConstructor
 public class VideoController {
 
-    private final String uploadDir = "uploads";
-    private final ObjectMapper objectMapper;
+    private final MetadataStore metadataStore;
+    private final MediaStreamService mediaStreamService;
+    private final MediaCatalogService mediaCatalogService;
+    private final MediaSegmentCache mediaSegmentCache;
+    private final EgressScheduler egressScheduler;
+    private final MediaUrlSigner mediaUrlSigner;
 
     @PostMapping("/metadata")
     public ResponseEntity<Map<String, String>> saveMetadata(@RequestBody Map<String, String> metadata) {
         try {
-            Path metadataPath = Paths.get(uploadDir, "metadata").toAbsolutePath();
-            if (!Files.exists(metadataPath)) {
-                Files.createDirectories(metadataPath);
-            }
-
             String videoFileName = metadata.get("videoFileName");
-            String metadataFileName = videoFileName.substring(0, videoFileName.lastIndexOf('.')) + ".json";
-            Path metadataFile = metadataPath.resolve(metadataFileName);
+            String videoId = videoFileName.substring(0, videoFileName.lastIndexOf('.'));
 
-            objectMapper.writeValue(metadataFile.toFile(), metadata);
+            metadataStore.put(videoId, metadata);
+            mediaCatalogService.onMetadataSaved(videoId);
 
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
@@ -47,121 +49,87 @@ public class VideoController {
     }
 
     @GetMapping("/list")
-    public ResponseEntity<List<Map<String, Object>>> listVideos() {
-        try {
-            Path videosPath = Paths.get(uploadDir, "videos").toAbsolutePath();
-            Path pdfsPath = Paths.get(uploadDir, "pdfs").toAbsolutePath();
-            Path metadataPath = Paths.get(uploadDir, "metadata").toAbsolutePath();
-
-            if (!Files.exists(videosPath)) {
-                return ResponseEntity.ok(new ArrayList<>());
-            }
-
-            List<Map<String, Object>> videos = new ArrayList<>();
-
-            Files.list(videosPath)
-                    .filter(Files::isRegularFile)
-                    .forEach(videoPath -> {
-                        try {
-                            Map<String, Object> videoInfo = new HashMap<>();
-                            String videoFileName = videoPath.getFileName().toString();
-                            String videoId = videoFileName.substring(0, videoFileName.lastIndexOf('.'));
-
-                            videoInfo.put("id", videoId);
-                            videoInfo.put("name", videoFileName);
-                            videoInfo.put("videoUrl", "/api/videos/stream/" + videoFileName);
-                            videoInfo.put("size", Files.size(videoPath));
-
-                            // Load metadata
-                            Path metadataFile = metadataPath.resolve(videoId + ".json");
-                            if (Files.exists(metadataFile)) {
-                                Map<String, Object> metadata = objectMapper.readValue(metadataFile.toFile(), Map.class);
-                                videoInfo.put("title", metadata.get("title"));
-                                videoInfo.put("description", metadata.get("description"));
-                            }
-
-                            // Check for PDF
-                            if (Files.exists(pdfsPath)) {
-                                Files.list(pdfsPath)
-                                        .filter(p -> p.getFileName().toString().startsWith(videoId))
-                                        .findFirst()
-                                        .ifPresent(pdfPath -> {
-                                            String pdfFileName = pdfPath.getFileName().toString();
-                                            videoInfo.put("pdfUrl", "/api/videos/pdf/" + pdfFileName);
-                                            videoInfo.put("pdfName", pdfFileName);
-                                        });
-                            }
-
-                            videos.add(videoInfo);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    });
-
-            return ResponseEntity.ok(videos);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return ResponseEntity.ok(new ArrayList<>());
+    public ResponseEntity<List<Map<String, Object>>> listVideos(
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "50") int size,
+            WebRequest webRequest) {
+        String etag = mediaCatalogService.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
         }
+
+        List<Map<String, Object>> all = mediaCatalogService.listVideos();
+        List<Map<String, Object>> videos = page == null
+                ? all
+                : mediaCatalogService.listVideos(Math.max(page, 0), Math.max(1, Math.min(size, 500)));
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header("X-Total-Count", String.valueOf(all.size()))
+                .body(videos);
+    }
+
+    @GetMapping("/segment-cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> segmentCacheStats() {
+        return ResponseEntity.ok(mediaSegmentCache.stats());
+    }
+
+    @GetMapping("/egress/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> egressStats() {
+        return ResponseEntity.ok(egressScheduler.stats());
     }
 
     @GetMapping("/stream/{filename:.+}")
-    public ResponseEntity<Resource> streamVideo(@PathVariable String filename) {
-        try {
-            Path filePath = Paths.get(uploadDir, "videos", filename).toAbsolutePath();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                // Detect content type based on file extension
-                String contentType = "video/mp4"; // default
-                String fileExtension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
-
-                switch (fileExtension) {
-                    case "mov":
-                        contentType = "video/quicktime";
-                        break;
-                    case "avi":
-                        contentType = "video/x-msvideo";
-                        break;
-                    case "mkv":
-                        contentType = "video/x-matroska";
-                        break;
-                    case "webm":
-                        contentType = "video/webm";
-                        break;
-                    default:
-                        contentType = "video/mp4";
-                }
-
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (IOException e) {
-            return ResponseEntity.notFound().build();
-        }
+    public void streamVideo(@PathVariable String filename,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        serveMedia("videos", filename, MediaType.parseMediaType(detectVideoContentType(filename)),
+                "inline", request, response);
     }
 
     @GetMapping("/pdf/{filename:.+}")
-    public ResponseEntity<Resource> downloadPdf(@PathVariable String filename) {
+    public void downloadPdf(@PathVariable String filename,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        serveMedia("pdfs", filename, MediaType.APPLICATION_PDF, "attachment", request, response);
+    }
+
+    private void serveMedia(String folder, String filename, MediaType contentType, String dispositionType,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!mediaUrlSigner.verify(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        String key = folder + "/" + filename;
         try {
-            Path filePath = Paths.get(uploadDir, "pdfs", filename).toAbsolutePath();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.APPLICATION_PDF)
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (IOException e) {
-            return ResponseEntity.notFound().build();
+            StorageBackend.splitKey(key);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // Uploaded PDFs never change under their name; videos may still be rewritten by faststart
+        mediaStreamService.serve(key, contentType, dispositionType + "; filename=\"" + filename + "\"",
+                "pdfs".equals(folder), request, response);
+    }
+
+    private String detectVideoContentType(String filename) {
+        String fileExtension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
+
+        switch (fileExtension) {
+            case "mov":
+                return "video/quicktime";
+            case "avi":
+                return "video/x-msvideo";
+            case "mkv":
+                return "video/x-matroska";
+            case "webm":
+                return "video/webm";
+            default:
+                return "video/mp4";
         }
     }
 }
@@ -0,0 +1,254 @@
+package uz.edu.lms.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import uz.edu.lms.entity.User;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends connections of read-only transactions opened inside a {@link ReplicaRead}
+ * method to replica pools and everything else to the primary; implicit read-only
+ * transactions of repository methods stay on the primary. Replicas are health
+ * checked in the background and skipped while they are down or lag behind by more
+ * than {@code maxLag}; with none available reads fall back to the primary. After a client's read-write transaction commits, that
+ * client's reads stay on the primary for {@code stickyWindow}, so it sees its own
+ * writes. Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * the transaction manager opens the connection before the read-only flag is bound.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final Cache<Object, Boolean> recentWriters;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Integer> primaryOnly = ThreadLocal.withInitial(() -> 0);
+    private final ThreadLocal<Integer> replicaAllowed = ThreadLocal.withInitial(() -> 0);
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools,
+                                      String lagQuery, Duration maxLag, Duration stickyWindow) {
+        this.primary = primary;
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.maxLag = maxLag;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(stickyWindow)
+                .maximumSize(100_000)
+                .build();
+        checkReplicas();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = route();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.pool.getConnection();
+        } catch (SQLException e) {
+            replica.markDown(e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Runs {@code action} with every connection it opens taken from the primary.
+     */
+    public <T> T onPrimary(Supplier<T> action) {
+        primaryOnly.set(primaryOnly.get() + 1);
+        try {
+            return action.get();
+        } finally {
+            primaryOnly.set(primaryOnly.get() - 1);
+        }
+    }
+
+    /**
+     * Runs {@code action} allowing its read-only transactions to use a replica. Nested
+     * {@link #onPrimary} calls still win.
+     */
+    public <T> T onReplica(ReplicaAction<T> action) throws Throwable {
+        replicaAllowed.set(replicaAllowed.get() + 1);
+        try {
+            return action.run();
+        } finally {
+            replicaAllowed.set(replicaAllowed.get() - 1);
+        }
+    }
+
+    /**
+     * How far behind the primary a read may be: the lag limit when replicas are
+     * configured, zero otherwise.
+     */
+    public Duration maxReplicaLag() {
+        return replicas.isEmpty() ? Duration.ZERO : maxLag;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.routing.health-check-interval:PT5S}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection()) {
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    replica.markDown("connection is not valid");
+                    continue;
+                }
+                Duration lag = lagQuery != null ? readLag(connection) : Duration.ZERO;
+                replica.lag = lag;
+                if (lag.compareTo(maxLag) > 0) {
+                    replica.markDown("lagging " + lag.toMillis() + " ms");
+                } else {
+                    replica.markUp();
+                }
+            } catch (SQLException e) {
+                replica.markDown(e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("replicas", replicas.stream().map(replica -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", replica.pool.getPoolName());
+            entry.put("healthy", replica.healthy);
+            entry.put("lagMillis", replica.lag.toMillis());
+            return entry;
+        }).toList());
+        result.put("stickyClients", recentWriters.estimatedSize());
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private Replica route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriter();
+            return null;
+        }
+        if (replicas.isEmpty() || replicaAllowed.get() == 0 || primaryOnly.get() > 0) {
+            return null;
+        }
+        Object client = currentClient();
+        if (client != null && recentWriters.getIfPresent(client) != null) {
+            return null;
+        }
+        // Round-robin over the healthy replicas
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pins the client to the primary once its read-write transaction commits.
+     */
+    private void rememberWriter() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Object client = currentClient();
+        if (client == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        });
+    }
+
+    /**
+     * The signed-in user, or the remote address of an anonymous request; null outside
+     * of requests (schedulers, background workers).
+     */
+    private static Object currentClient() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet) {
+            return servlet.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+
+    private Duration readLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            double seconds = rs.next() ? rs.getDouble(1) : 0;
+            return Duration.ofMillis(Math.round(seconds * 1000));
+        }
+    }
+
+    @FunctionalInterface
+    public interface ReplicaAction<T> {
+        T run() throws Throwable;
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private volatile boolean healthy = true;
+        private volatile Duration lag = Duration.ZERO;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private void markUp() {
+            if (!healthy) {
+                log.info("Read replica {} is available", pool.getPoolName());
+            }
+            healthy = true;
+        }
+
+        private void markDown(String reason) {
+            if (healthy) {
+                log.warn("Read replica {} taken out of rotation: {}", pool.getPoolName(), reason);
+            }
+            healthy = false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package uz.edu.lms.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only service method whose queries may run on a read replica. Only
+ * read-only transactions inside such a method are routed to replicas; every other
+ * read, including Spring Data's implicit read-only repository transactions, stays
+ * on the primary, so check-then-write code never sees replication lag.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaRead {
+}
@@ -0,0 +1,20 @@
+package uz.edu.lms.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ReplicaReadAspect {
+
+    private final ReadWriteRoutingDataSource routingDataSource;
+
+    @Around("@annotation(uz.edu.lms.datasource.ReplicaRead)")
+    public Object onReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        return routingDataSource.onReplica(joinPoint::proceed);
+    }
+}
@@ -0,0 +1,31 @@
+package uz.edu.lms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResult {
+    private int courses;
+    private int modules;
+    private int lessons;
+    private int quizzes;
+    private int failed;
+    private long elapsedMillis;
+    // First errors only; failed has the full count
+    private List<RecordError> errors;
+
+    @Data
+    @AllArgsConstructor
+    public static class RecordError {
+        private long line;
+        private String ref;
+        private String message;
+    }
+}
@@ -0,0 +1,78 @@
+package uz.edu.lms.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One line of a bulk import or export (NDJSON). {@code type} is course, module, lesson
+ * or quiz. Courses and modules carry a {@code ref} that later lines use to point at
+ * them: a module names its course in {@code course} (or an existing course in
+ * {@code courseId}), and lessons and quizzes name their module in {@code module}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkRecord {
+    private String type;
+    private String ref;
+    private String course;
+    private Long courseId;
+    private String module;
+
+    private String title;
+    private String description;
+
+    // Course
+    private String imageUrl;
+    private Boolean active;
+
+    // Module
+    private Integer orderNumber;
+
+    // Lesson
+    private String videoUrl;
+    private String thumbnailUrl;
+    private String pdfUrl;
+    private String pdfFileName;
+    private Integer duration;
+    private String transcript;
+
+    // Quiz
+    private Integer timeLimit;
+    private Integer maxAttempts;
+    private Integer passingScore;
+    private List<QuestionRecord> questions;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class QuestionRecord {
+        private String questionText;
+        private String type;
+        private Integer points;
+        private Integer orderNumber;
+        private String explanation;
+        private List<OptionRecord> options;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class OptionRecord {
+        private String optionText;
+        private Boolean isCorrect;
+        private String matchText;
+        private Integer orderNumber;
+    }
+}
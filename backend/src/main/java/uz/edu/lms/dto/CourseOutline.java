@@ -0,0 +1,55 @@
+package uz.edu.lms.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A course with its modules in order, each with a summary of its lesson and quiz
+ * (null when the module has none). Immutable, so one instance can be cached and
+ * shared between requests.
+ */
+@Value
+@Builder
+public class CourseOutline {
+    Long id;
+    String title;
+    String description;
+    String imageUrl;
+    String teacherName;
+    Boolean active;
+    List<ModuleOutline> modules;
+
+    @Value
+    @Builder
+    public static class ModuleOutline {
+        Long id;
+        String title;
+        String description;
+        Integer orderNumber;
+        LessonSummary lesson;
+        QuizSummary quiz;
+    }
+
+    @Value
+    @Builder
+    public static class LessonSummary {
+        Long id;
+        String title;
+        String videoType;
+        Integer duration;
+        String thumbnailUrl;
+        boolean hasPdf;
+    }
+
+    @Value
+    @Builder
+    public static class QuizSummary {
+        Long id;
+        String title;
+        Integer timeLimit;
+        Integer maxAttempts;
+        Integer passingScore;
+    }
+}
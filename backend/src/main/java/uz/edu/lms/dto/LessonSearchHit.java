@@ -0,0 +1,30 @@
+package uz.edu.lms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * A ranked search match. Highlights hold HTML-escaped fragments of the matching
+ * fields with matched words wrapped in {@code <mark>}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonSearchHit {
+    private Long id;
+    private String title;
+    private String description;
+    private String thumbnailUrl;
+    private Integer duration;
+    private Long moduleId;
+    private String moduleName;
+    private Long courseId;
+    private String courseName;
+    private float score;
+    private Map<String, String> highlights;
+}
@@ -0,0 +1,20 @@
+package uz.edu.lms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonSearchResult {
+    private String query;
+    private int page;
+    private int size;
+    private long total;
+    private List<LessonSearchHit> items;
+}
@@ -0,0 +1,22 @@
+package uz.edu.lms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A slice of a lesson transcript. Offsets and lengths are in characters;
+ * {@code nextOffset} is null once the end of the transcript is reached.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptPage {
+    private Long lessonId;
+    private int offset;
+    private int length;
+    private String text;
+    private Integer nextOffset;
+}
@@ -1,5 +1,6 @@
 package uz.edu.lms.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -8,19 +9,27 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
+@JsonFilter(VideoLessonDTO.FIELDS_FILTER)
 @NoArgsConstructor
 @AllArgsConstructor
 public class VideoLessonDTO {
+
+    /**
+     * Jackson filter that limits the serialized properties to a requested fieldset.
+     */
+    public static final String FIELDS_FILTER = "lessonFields";
+
     private Long id;
     private String title;
     private String description;
     private String videoUrl;
+    private String signedVideoUrl;
     private String thumbnailUrl;
     private String pdfUrl;
     private String pdfFileName;
+    private String signedPdfUrl;
     private Integer duration;
-    private String transcript;
     private Long moduleId;
     private String moduleName;
     private Integer moduleOrder;
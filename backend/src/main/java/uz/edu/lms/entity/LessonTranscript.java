@@ -0,0 +1,50 @@
+package uz.edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transcript of a lesson, kept out of video_lessons so lesson reads never load it.
+ * The text is stored deflate-compressed; {@code length} is its length in characters.
+ */
+@Entity
+@Table(name = "lesson_transcripts")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonTranscript {
+
+    public static final int MAX_COMPRESSED_SIZE = 16 * 1024 * 1024;
+
+    @Id
+    private Long lessonId;
+
+    // Removed by the database together with its lesson, including course and module cascades
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lesson_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private VideoLesson lesson;
+
+    @Column(nullable = false, length = MAX_COMPRESSED_SIZE)
+    private byte[] content;
+
+    @Column(nullable = false)
+    private Integer length;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,90 @@
+package uz.edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+@Entity
+@Table(name = "media_jobs", indexes = {
+        @Index(name = "idx_media_jobs_status_next_run", columnList = "status, nextRunAt"),
+        @Index(name = "idx_media_jobs_asset_key", columnList = "assetKey")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "media_jobs_seq")
+    @SequenceGenerator(name = "media_jobs_seq", sequenceName = "media_jobs_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String assetKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    // Comma-separated stages that have finished, so a retry resumes after them
+    @Column(nullable = false)
+    @Builder.Default
+    private String completedStages = "";
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    private Integer duration;
+
+    // Instance running the job and the end of its lease, renewed while it runs
+    private String lockedBy;
+
+    private LocalDateTime lockedUntil;
+
+    @Column(nullable = false)
+    private LocalDateTime nextRunAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (nextRunAt == null) {
+            nextRunAt = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isStageCompleted(Stage stage) {
+        return completedStages != null && !completedStages.isEmpty()
+                && Arrays.asList(completedStages.split(",")).contains(stage.name());
+    }
+
+    public enum Status {
+        PENDING, RUNNING, SUCCEEDED, FAILED
+    }
+
+    public enum Stage {
+        FASTSTART, PROBE_DURATION, PRECOMPRESS
+    }
+}
@@ -11,7 +11,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "modules")
+@Table(name = "modules", indexes = {
+        @Index(name = "idx_modules_course_order_id", columnList = "course_id, orderNumber, id"),
+        @Index(name = "idx_modules_order_id", columnList = "orderNumber, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,7 +22,8 @@ import java.util.List;
 public class Module {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "modules_seq")
+    @SequenceGenerator(name = "modules_seq", sequenceName = "modules_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -15,7 +15,8 @@ import lombok.NoArgsConstructor;
 public class QuestionOption {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_options_seq")
+    @SequenceGenerator(name = "question_options_seq", sequenceName = "question_options_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -28,5 +29,9 @@ public class QuestionOption {
     @Column(nullable = false)
     private Boolean isCorrect = false;
 
+    // MATCHING: the right-hand item this option must be paired with
+    @Column(columnDefinition = "TEXT")
+    private String matchText;
+
     private Integer orderNumber;
 }
@@ -19,7 +19,8 @@ import java.util.List;
 public class QuizAttempt {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "quiz_attempts_seq")
+    @SequenceGenerator(name = "quiz_attempts_seq", sequenceName = "quiz_attempts_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,56 @@
+package uz.edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted storage usage of one teacher or course. Rows are written by the
+ * periodic flush of the in-memory counters, never on the upload path.
+ */
+@Entity
+@Table(name = "storage_usage", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_storage_usage_scope", columnNames = {"scope", "scopeId"})
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "storage_usage_seq")
+    @SequenceGenerator(name = "storage_usage_seq", sequenceName = "storage_usage_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Scope scope;
+
+    @Column(nullable = false)
+    private Long scopeId;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long bytes = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long files = 0L;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Scope {
+        TEACHER, COURSE
+    }
+}
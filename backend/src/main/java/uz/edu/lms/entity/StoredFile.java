@@ -0,0 +1,48 @@
+package uz.edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Who an uploaded file is charged to, so deleting it can credit the same quotas.
+ */
+@Entity
+@Table(name = "stored_files", indexes = {
+        @Index(name = "idx_stored_files_file_key", columnList = "fileKey", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stored_files_seq")
+    @SequenceGenerator(name = "stored_files_seq", sequenceName = "stored_files_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String fileKey;
+
+    @Column(nullable = false)
+    private Long size;
+
+    private Long teacherId;
+
+    private Long courseId;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
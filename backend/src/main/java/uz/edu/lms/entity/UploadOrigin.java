@@ -0,0 +1,46 @@
+package uz.edu.lms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Whether a stored file was only ever uploaded for lessons. Only such files are
+ * garbage collected once no lesson references them; files also uploaded to the
+ * media library, and files stored before origins were recorded, are kept.
+ */
+@Entity
+@Table(name = "upload_origins", indexes = {
+        @Index(name = "idx_upload_origins_file_key", columnList = "fileKey", unique = true)
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadOrigin {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "upload_origins_seq")
+    @SequenceGenerator(name = "upload_origins_seq", sequenceName = "upload_origins_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String fileKey;
+
+    @Column(nullable = false)
+    private Boolean lessonOnly;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -9,7 +9,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "video_lessons")
+@Table(name = "video_lessons", indexes = {
+        @Index(name = "idx_video_lessons_created_at_id", columnList = "createdAt, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,7 +19,8 @@ import java.time.LocalDateTime;
 public class VideoLesson {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "video_lessons_seq")
+    @SequenceGenerator(name = "video_lessons_seq", sequenceName = "video_lessons_seq", allocationSize = 50)
     private Long id;
 
     @OneToOne(fetch = FetchType.LAZY)
@@ -41,9 +44,6 @@ public class VideoLesson {
 
     private String thumbnailUrl;
 
-    @Column(columnDefinition = "TEXT")
-    private String transcript;
-
     private String pdfUrl;
 
     private String pdfFileName;
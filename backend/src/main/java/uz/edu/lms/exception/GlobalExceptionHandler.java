@@ -1,5 +1,6 @@
 package uz.edu.lms.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -35,6 +36,19 @@ public class GlobalExceptionHandler {
         return buildErrorResponse("File size exceeds maximum allowed size of 500MB", HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(UploadCapacityExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadCapacityExceededException(UploadCapacityExceededException ex) {
+        ResponseEntity<Map<String, Object>> response = buildErrorResponse(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleQuotaExceededException(QuotaExceededException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgumentException(IllegalArgumentException ex) {
         return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
@@ -0,0 +1,9 @@
+package uz.edu.lms.exception;
+
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(String scope, long limit, long used, long requested) {
+        super(String.format("Storage quota of %s exceeded: %d of %d bytes used, %d more requested",
+                scope, used, limit, requested));
+    }
+}
@@ -0,0 +1,15 @@
+package uz.edu.lms.exception;
+
+public class UploadCapacityExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public UploadCapacityExceededException(long retryAfterSeconds) {
+        super("Too many concurrent uploads, please retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
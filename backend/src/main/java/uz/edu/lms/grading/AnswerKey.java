@@ -0,0 +1,213 @@
+package uz.edu.lms.grading;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uz.edu.lms.entity.Answer;
+import uz.edu.lms.entity.Question;
+import uz.edu.lms.entity.QuestionOption;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A quiz compiled for grading. Option-based questions (MULTIPLE_CHOICE, TRUE_FALSE)
+ * keep their correct options as a bitset over the question's options, SHORT_ANSWER
+ * keeps the normalized texts of its correct options (where {@code *} matches any
+ * text), and MATCHING keeps the normalized {@code matchText} each option must be
+ * paired with. Grading only reads the key and the submitted answers, never the
+ * database. Instances are immutable and safe to share between threads.
+ */
+public final class AnswerKey {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<Long, String>> MATCHES = new TypeReference<>() {
+    };
+    private static final Pattern APOSTROPHES = Pattern.compile("[‘’ʻʼ`´]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[.!?;,]+$");
+
+    private final long quizId;
+    private final int maxScore;
+    private final Map<Long, QuestionKey> questions;
+
+    private AnswerKey(long quizId, Map<Long, QuestionKey> questions) {
+        this.quizId = quizId;
+        this.questions = Collections.unmodifiableMap(questions);
+        this.maxScore = questions.values().stream().mapToInt(QuestionKey::points).sum();
+    }
+
+    public static AnswerKey compile(long quizId, List<Question> questions) {
+        Map<Long, QuestionKey> keys = new LinkedHashMap<>();
+        for (Question question : questions) {
+            List<QuestionOption> options = question.getOptions().stream()
+                    .sorted(Comparator.comparing(QuestionOption::getOrderNumber,
+                                    Comparator.nullsLast(Comparator.naturalOrder()))
+                            .thenComparing(QuestionOption::getId))
+                    .toList();
+            Map<Long, Integer> optionIndex = new HashMap<>();
+            BitSet correct = new BitSet(options.size());
+            Set<String> accepted = new HashSet<>();
+            List<Pattern> acceptedPatterns = new ArrayList<>();
+            Map<Long, String> matches = new HashMap<>();
+            for (int i = 0; i < options.size(); i++) {
+                QuestionOption option = options.get(i);
+                optionIndex.put(option.getId(), i);
+                if (Boolean.TRUE.equals(option.getIsCorrect())) {
+                    correct.set(i);
+                    if (question.getType() == Question.QuestionType.SHORT_ANSWER) {
+                        String text = normalize(option.getOptionText());
+                        if (text.contains("*")) {
+                            acceptedPatterns.add(wildcard(text));
+                        } else {
+                            accepted.add(text);
+                        }
+                    }
+                }
+                if (question.getType() == Question.QuestionType.MATCHING && option.getMatchText() != null) {
+                    matches.put(option.getId(), normalize(option.getMatchText()));
+                }
+            }
+            keys.put(question.getId(), new QuestionKey(question.getType(), question.getPoints() != null
+                    ? question.getPoints() : 1, Map.copyOf(optionIndex), correct, Set.copyOf(accepted),
+                    List.copyOf(acceptedPatterns), Map.copyOf(matches)));
+        }
+        return new AnswerKey(quizId, keys);
+    }
+
+    public long getQuizId() {
+        return quizId;
+    }
+
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Sets {@code correct} and {@code pointsEarned} on every answer and returns the
+     * total. Questions left unanswered earn nothing but still count towards the
+     * maximum. MATCHING earns points in proportion to the pairs matched; the other
+     * types are all or nothing.
+     *
+     * @throws IllegalArgumentException if an answer is for a question or option
+     *                                  outside this quiz, or answers a question twice
+     */
+    public int grade(List<Answer> answers) {
+        Set<Long> answered = new HashSet<>();
+        int score = 0;
+        for (Answer answer : answers) {
+            Long questionId = answer.getQuestion() != null ? answer.getQuestion().getId() : null;
+            QuestionKey key = questions.get(questionId);
+            if (key == null) {
+                throw new IllegalArgumentException("Question " + questionId + " is not part of quiz " + quizId);
+            }
+            if (!answered.add(questionId)) {
+                throw new IllegalArgumentException("Question " + questionId + " is answered more than once");
+            }
+            int earned = switch (key.type()) {
+                case MULTIPLE_CHOICE, TRUE_FALSE -> key.correct().equals(selected(key, answer)) ? key.points() : 0;
+                case SHORT_ANSWER -> key.accepts(answer.getTextAnswer()) ? key.points() : 0;
+                case MATCHING -> key.matched(answer.getTextAnswer());
+            };
+            answer.setPointsEarned(earned);
+            answer.setCorrect(earned == key.points());
+            score += earned;
+        }
+        return score;
+    }
+
+    private static BitSet selected(QuestionKey key, Answer answer) {
+        BitSet selected = new BitSet(key.optionIndex().size());
+        if (answer.getSelectedOptions() == null) {
+            return selected;
+        }
+        for (QuestionOption option : answer.getSelectedOptions()) {
+            Integer index = key.optionIndex().get(option.getId());
+            if (index == null) {
+                throw new IllegalArgumentException("Option " + option.getId() + " does not belong to question "
+                        + answer.getQuestion().getId());
+            }
+            selected.set(index);
+        }
+        return selected;
+    }
+
+    /**
+     * Lowercases, unifies apostrophes, collapses whitespace and drops trailing
+     * punctuation, so answers differing only in typing match.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = APOSTROPHES.matcher(normalized).replaceAll("'");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private static Pattern wildcard(String text) {
+        String[] parts = text.split("\\*", -1);
+        StringBuilder regex = new StringBuilder(Pattern.quote(parts[0]));
+        for (int i = 1; i < parts.length; i++) {
+            regex.append(".*").append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * The compiled form of one question. {@code correct} is never handed out, so its
+     * mutability does not leak.
+     */
+    private record QuestionKey(Question.QuestionType type, int points, Map<Long, Integer> optionIndex,
+                               BitSet correct, Set<String> accepted, List<Pattern> acceptedPatterns,
+                               Map<Long, String> matches) {
+
+        boolean accepts(String text) {
+            String normalized = normalize(text);
+            if (normalized.isEmpty()) {
+                return false;
+            }
+            return accepted.contains(normalized)
+                    || acceptedPatterns.stream().anyMatch(pattern -> pattern.matcher(normalized).matches());
+        }
+
+        /**
+         * Points for a MATCHING answer, whose text is a JSON object from option id to
+         * the right-hand item chosen for it.
+         */
+        int matched(String text) {
+            if (matches.isEmpty() || text == null || text.isBlank()) {
+                return 0;
+            }
+            Map<Long, String> chosen;
+            try {
+                chosen = JSON.readValue(text, MATCHES);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("MATCHING answers must map option ids to texts");
+            }
+            int right = 0;
+            for (Map.Entry<Long, String> entry : chosen.entrySet()) {
+                String expected = matches.get(entry.getKey());
+                if (expected == null) {
+                    throw new IllegalArgumentException("Option " + entry.getKey() + " is not a MATCHING option");
+                }
+                if (expected.equals(normalize(entry.getValue()))) {
+                    right++;
+                }
+            }
+            return points * right / matches.size();
+        }
+    }
+}
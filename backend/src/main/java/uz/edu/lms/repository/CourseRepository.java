@@ -1,14 +1,25 @@
 package uz.edu.lms.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import uz.edu.lms.entity.Course;
 import uz.edu.lms.entity.User;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, Long> {
     List<Course> findByTeacher(User teacher);
     List<Course> findByActiveTrue();
+
+    /**
+     * The course with its teacher, modules (in order) and each module's lesson and quiz,
+     * all in one query.
+     */
+    @Query("select c from Course c left join fetch c.teacher left join fetch c.modules m "
+            + "left join fetch m.videoLesson left join fetch m.quiz where c.id = :id")
+    Optional<Course> findOutlineById(@Param("id") Long id);
 }
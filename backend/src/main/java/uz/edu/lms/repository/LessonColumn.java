@@ -0,0 +1,43 @@
+package uz.edu.lms.repository;
+
+/**
+ * Columns of a {@link LessonView}, each read from the lesson, its module or its course.
+ * Projections select only the requested columns; the others stay null in the view.
+ */
+public enum LessonColumn {
+    ID(Source.LESSON, "id"),
+    TITLE(Source.LESSON, "title"),
+    DESCRIPTION(Source.LESSON, "description"),
+    VIDEO_URL(Source.LESSON, "videoUrl"),
+    THUMBNAIL_URL(Source.LESSON, "thumbnailUrl"),
+    PDF_URL(Source.LESSON, "pdfUrl"),
+    PDF_FILE_NAME(Source.LESSON, "pdfFileName"),
+    DURATION(Source.LESSON, "duration"),
+    CREATED_AT(Source.LESSON, "createdAt"),
+    UPDATED_AT(Source.LESSON, "updatedAt"),
+    MODULE_ID(Source.MODULE, "id"),
+    MODULE_NAME(Source.MODULE, "title"),
+    MODULE_ORDER(Source.MODULE, "orderNumber"),
+    COURSE_ID(Source.COURSE, "id"),
+    COURSE_NAME(Source.COURSE, "title");
+
+    public enum Source {
+        LESSON, MODULE, COURSE
+    }
+
+    private final Source source;
+    private final String attribute;
+
+    LessonColumn(Source source, String attribute) {
+        this.source = source;
+        this.attribute = attribute;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+}
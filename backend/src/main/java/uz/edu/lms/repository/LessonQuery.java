@@ -0,0 +1,10 @@
+package uz.edu.lms.repository;
+
+/**
+ * Filters, order and keyset position of a lesson listing. {@code afterKey} and
+ * {@code afterId} are the sort key and id of the last lesson of the previous page,
+ * or null for the first page; {@code limit} 0 means no limit.
+ */
+public record LessonQuery(LessonSort sort, Long courseId, Long moduleId, Long teacherId,
+                          Comparable<?> afterKey, Long afterId, int limit) {
+}
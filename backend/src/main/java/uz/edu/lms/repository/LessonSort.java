@@ -0,0 +1,17 @@
+package uz.edu.lms.repository;
+
+/**
+ * Orders of the keyset-paginated lesson listing: newest first by {@code (createdAt, id)},
+ * or by {@code (module order, id)} for lessons attached to a module.
+ */
+public enum LessonSort {
+    CREATED_AT, MODULE_ORDER;
+
+    public static LessonSort fromParameter(String value) {
+        return switch (value) {
+            case "createdAt" -> CREATED_AT;
+            case "moduleOrder" -> MODULE_ORDER;
+            default -> throw new IllegalArgumentException("sort must be createdAt or moduleOrder");
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package uz.edu.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import uz.edu.lms.entity.LessonTranscript;
+
+@Repository
+public interface LessonTranscriptRepository extends JpaRepository<LessonTranscript, Long> {
+}
@@ -0,0 +1,27 @@
+package uz.edu.lms.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a lesson with its module and course, selected in one
+ * query instead of walking the lazy associations of managed entities.
+ * Module and course fields are null for lessons without a module, and any
+ * column left out of a sparse projection is null as well.
+ */
+public record LessonView(
+        Long id,
+        String title,
+        String description,
+        String videoUrl,
+        String thumbnailUrl,
+        String pdfUrl,
+        String pdfFileName,
+        Integer duration,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Long moduleId,
+        String moduleName,
+        Integer moduleOrder,
+        Long courseId,
+        String courseName) {
+}
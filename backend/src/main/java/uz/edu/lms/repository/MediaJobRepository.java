@@ -0,0 +1,59 @@
+package uz.edu.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uz.edu.lms.entity.MediaJob;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MediaJobRepository extends JpaRepository<MediaJob, Long> {
+
+    Optional<MediaJob> findFirstByAssetKeyOrderByIdDesc(String assetKey);
+
+    @Query("SELECT j.id FROM MediaJob j WHERE j.status = :status AND j.nextRunAt <= :now ORDER BY j.nextRunAt, j.id")
+    List<Long> findDueJobIds(@Param("status") MediaJob.Status status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Moves a job from one status to another under a lease held by {@code owner}, only
+     * if it is still in {@code from}, so concurrent pollers (or application instances)
+     * never claim the same job twice.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaJob j SET j.status = :to, j.lockedBy = :owner, j.lockedUntil = :until, j.updatedAt = :now"
+            + " WHERE j.id = :id AND j.status = :from")
+    int claim(@Param("id") Long id, @Param("from") MediaJob.Status from, @Param("to") MediaJob.Status to,
+              @Param("owner") String owner, @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaJob j SET j.lockedUntil = :until WHERE j.status = :status AND j.lockedBy = :owner")
+    int renewLeases(@Param("status") MediaJob.Status status, @Param("owner") String owner,
+                    @Param("until") LocalDateTime until);
+
+    /**
+     * Moves jobs whose lease ran out before {@code now} from one status to another.
+     * Their owner stopped renewing the lease, so it crashed or was shut down.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaJob j SET j.status = :to, j.lockedBy = NULL, j.lockedUntil = NULL, j.updatedAt = :now"
+            + " WHERE j.status = :from AND (j.lockedUntil IS NULL OR j.lockedUntil < :now)")
+    int transitionExpired(@Param("from") MediaJob.Status from, @Param("to") MediaJob.Status to,
+                          @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE MediaJob j SET j.status = :to, j.lockedBy = NULL, j.lockedUntil = NULL, j.updatedAt = :now"
+            + " WHERE j.status = :from AND j.lockedBy = :owner")
+    int transitionOwned(@Param("owner") String owner, @Param("from") MediaJob.Status from,
+                        @Param("to") MediaJob.Status to, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,19 @@
+package uz.edu.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import uz.edu.lms.entity.Question;
+
+import java.util.List;
+
+@Repository
+public interface QuestionRepository extends JpaRepository<Question, Long> {
+
+    /**
+     * Every question of a quiz with its options, in one query.
+     */
+    @Query("select q from Question q left join fetch q.options where q.quiz.id = :quizId")
+    List<Question> findWithOptionsByQuizId(@Param("quizId") Long quizId);
+}
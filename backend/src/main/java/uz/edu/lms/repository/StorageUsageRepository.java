@@ -0,0 +1,29 @@
+package uz.edu.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uz.edu.lms.entity.StorageUsage;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, Long> {
+
+    Optional<StorageUsage> findByScopeAndScopeId(StorageUsage.Scope scope, Long scopeId);
+
+    /**
+     * Adds to a row's totals in place, so instances flushing at the same time never
+     * overwrite each other. Returns 0 if the row does not exist yet.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StorageUsage u SET u.bytes = u.bytes + :bytes, u.files = u.files + :files, u.updatedAt = :now"
+            + " WHERE u.scope = :scope AND u.scopeId = :scopeId")
+    int addUsage(@Param("scope") StorageUsage.Scope scope, @Param("scopeId") Long scopeId,
+                 @Param("bytes") long bytes, @Param("files") long files, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,15 @@
+package uz.edu.lms.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import uz.edu.lms.entity.StoredFile;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findByFileKey(String fileKey);
+
+    boolean existsByFileKey(String fileKey);
+}
@@ -0,0 +1,34 @@
+package uz.edu.lms.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uz.edu.lms.entity.UploadOrigin;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadOriginRepository extends JpaRepository<UploadOrigin, Long> {
+
+    Optional<UploadOrigin> findByFileKey(String fileKey);
+
+    boolean existsByFileKeyAndLessonOnlyTrue(String fileKey);
+
+    long countByLessonOnlyTrue();
+
+    @Query("SELECT o.id, o.fileKey FROM UploadOrigin o WHERE o.lessonOnly = true AND o.id > :afterId ORDER BY o.id")
+    List<Object[]> findLessonOnlyKeys(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Marks a file as also uploaded outside of lessons, which keeps it from ever being collected.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadOrigin o SET o.lessonOnly = false WHERE o.fileKey = :fileKey")
+    int pin(@Param("fileKey") String fileKey);
+}
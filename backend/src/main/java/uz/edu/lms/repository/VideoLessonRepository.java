@@ -1,21 +1,42 @@
 package uz.edu.lms.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import uz.edu.lms.entity.VideoLesson;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface VideoLessonRepository extends JpaRepository<VideoLesson, Long> {
+public interface VideoLessonRepository extends JpaRepository<VideoLesson, Long>, VideoLessonRepositoryCustom {
 
     Optional<VideoLesson> findByModuleId(Long moduleId);
 
-    @Query("SELECT vl FROM VideoLesson vl JOIN FETCH vl.module m WHERE m.course.id = :courseId ORDER BY m.orderNumber")
-    List<VideoLesson> findByCourseIdOrderByModuleOrder(@Param("courseId") Long courseId);
+    long countByVideoUrlOrPdfUrl(String videoUrl, String pdfUrl);
+
+    List<VideoLesson> findByVideoUrlAndDurationIsNull(String videoUrl);
+
+    boolean existsByVideoUrlOrPdfUrlOrThumbnailUrl(String videoUrl, String pdfUrl, String thumbnailUrl);
+
+    @Query("SELECT vl.id, vl.videoUrl, vl.pdfUrl, vl.thumbnailUrl FROM VideoLesson vl WHERE vl.id > :afterId ORDER BY vl.id")
+    List<Object[]> findFileReferences(@Param("afterId") Long afterId, Pageable pageable);
+
+    String LESSON_VIEW = "SELECT new uz.edu.lms.repository.LessonView(vl.id, vl.title, vl.description, vl.videoUrl, "
+            + "vl.thumbnailUrl, vl.pdfUrl, vl.pdfFileName, vl.duration, vl.createdAt, vl.updatedAt, "
+            + "m.id, m.title, m.orderNumber, c.id, c.title) ";
+
+    @Query(LESSON_VIEW + "FROM VideoLesson vl LEFT JOIN vl.module m LEFT JOIN m.course c WHERE vl.id = :id")
+    Optional<LessonView> findViewById(@Param("id") Long id);
+
+    @Query(LESSON_VIEW + "FROM VideoLesson vl LEFT JOIN vl.module m LEFT JOIN m.course c WHERE vl.id IN :ids")
+    List<LessonView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT vl.id, vl.createdAt, vl.updatedAt FROM VideoLesson vl")
+    List<Object[]> findAllVersions();
 
     @Query("SELECT COUNT(vl) FROM VideoLesson vl JOIN vl.module m WHERE m.course.id = :courseId")
     Long countByCourseId(@Param("courseId") Long courseId);
@@ -0,0 +1,13 @@
+package uz.edu.lms.repository;
+
+import java.util.List;
+import java.util.Set;
+
+public interface VideoLessonRepositoryCustom {
+
+    /**
+     * Lessons matching {@code query}, selecting only {@code columns} plus the id and
+     * sort key; every other component of the returned views is null.
+     */
+    List<LessonView> findViews(LessonQuery query, Set<LessonColumn> columns);
+}
@@ -0,0 +1,126 @@
+package uz.edu.lms.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import uz.edu.lms.entity.Course;
+import uz.edu.lms.entity.Module;
+import uz.edu.lms.entity.VideoLesson;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds lesson listings as criteria tuple queries, so a sparse fieldset reaches the
+ * SQL select list and the module and course tables are joined only when a filter
+ * or a requested column needs them.
+ */
+public class VideoLessonRepositoryCustomImpl implements VideoLessonRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<LessonView> findViews(LessonQuery query, Set<LessonColumn> columns) {
+        boolean byModuleOrder = query.sort() == LessonSort.MODULE_ORDER;
+        Set<LessonColumn> selected = EnumSet.of(LessonColumn.ID,
+                byModuleOrder ? LessonColumn.MODULE_ORDER : LessonColumn.CREATED_AT);
+        selected.addAll(columns);
+        boolean needsCourse = query.teacherId() != null
+                || selected.stream().anyMatch(c -> c.getSource() == LessonColumn.Source.COURSE);
+        boolean needsModule = byModuleOrder || needsCourse
+                || selected.stream().anyMatch(c -> c.getSource() == LessonColumn.Source.MODULE);
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteria = cb.createTupleQuery();
+        Root<VideoLesson> lesson = criteria.from(VideoLesson.class);
+        Join<VideoLesson, Module> module = needsModule
+                ? lesson.join("module", byModuleOrder ? JoinType.INNER : JoinType.LEFT)
+                : null;
+        Join<Module, Course> course = needsCourse ? module.join("course", JoinType.LEFT) : null;
+
+        List<Selection<?>> selections = new ArrayList<>();
+        for (LessonColumn column : selected) {
+            Path<?> source = switch (column.getSource()) {
+                case LESSON -> lesson;
+                case MODULE -> module;
+                case COURSE -> course;
+            };
+            selections.add(source.get(column.getAttribute()).alias(column.name()));
+        }
+        criteria.multiselect(selections);
+
+        // Filters on foreign keys compare the key column and need no extra join
+        List<Predicate> predicates = new ArrayList<>();
+        if (query.courseId() != null) {
+            predicates.add(cb.equal(lesson.get("module").get("course").get("id"), query.courseId()));
+        }
+        if (query.moduleId() != null) {
+            predicates.add(cb.equal(lesson.get("module").get("id"), query.moduleId()));
+        }
+        if (query.teacherId() != null) {
+            predicates.add(cb.equal(course.get("teacher").get("id"), query.teacherId()));
+        }
+        if (query.afterId() != null) {
+            predicates.add(byModuleOrder
+                    ? after(cb, lesson.get("id"), module.get("orderNumber"), (Integer) query.afterKey(), query.afterId(), false)
+                    : after(cb, lesson.get("id"), lesson.get("createdAt"), (LocalDateTime) query.afterKey(), query.afterId(), true));
+        }
+        criteria.where(predicates.toArray(new Predicate[0]));
+        criteria.orderBy(byModuleOrder
+                ? List.of(cb.asc(module.get("orderNumber")), cb.asc(lesson.get("id")))
+                : List.of(cb.desc(lesson.get("createdAt")), cb.desc(lesson.get("id"))));
+
+        TypedQuery<Tuple> typed = entityManager.createQuery(criteria);
+        if (query.limit() > 0) {
+            typed.setMaxResults(query.limit());
+        }
+        List<LessonView> views = new ArrayList<>();
+        for (Tuple tuple : typed.getResultList()) {
+            views.add(new LessonView(
+                    value(tuple, selected, LessonColumn.ID, Long.class),
+                    value(tuple, selected, LessonColumn.TITLE, String.class),
+                    value(tuple, selected, LessonColumn.DESCRIPTION, String.class),
+                    value(tuple, selected, LessonColumn.VIDEO_URL, String.class),
+                    value(tuple, selected, LessonColumn.THUMBNAIL_URL, String.class),
+                    value(tuple, selected, LessonColumn.PDF_URL, String.class),
+                    value(tuple, selected, LessonColumn.PDF_FILE_NAME, String.class),
+                    value(tuple, selected, LessonColumn.DURATION, Integer.class),
+                    value(tuple, selected, LessonColumn.CREATED_AT, LocalDateTime.class),
+                    value(tuple, selected, LessonColumn.UPDATED_AT, LocalDateTime.class),
+                    value(tuple, selected, LessonColumn.MODULE_ID, Long.class),
+                    value(tuple, selected, LessonColumn.MODULE_NAME, String.class),
+                    value(tuple, selected, LessonColumn.MODULE_ORDER, Integer.class),
+                    value(tuple, selected, LessonColumn.COURSE_ID, Long.class),
+                    value(tuple, selected, LessonColumn.COURSE_NAME, String.class)));
+        }
+        return views;
+    }
+
+    /**
+     * Row-value comparison {@code (key, id) > (value, lastId)}, or {@code <} when descending.
+     */
+    private static <T extends Comparable<? super T>> Predicate after(CriteriaBuilder cb, Path<Long> id, Path<T> key,
+                                                                     T value, Long lastId, boolean descending) {
+        if (descending) {
+            return cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
+        }
+        return cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
+    }
+
+    private static <T> T value(Tuple tuple, Set<LessonColumn> selected, LessonColumn column, Class<T> type) {
+        return selected.contains(column) ? tuple.get(column.name(), type) : null;
+    }
+}
@@ -0,0 +1,438 @@
+package uz.edu.lms.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * In-memory inverted index over lessons, ranked with BM25F: title, description
+ * and transcript term frequencies are combined with per-field weights before
+ * saturation. Postings are primitive arrays per term; updating a lesson
+ * tombstones its old document and appends a new one, and tombstoned documents
+ * are dropped by a compaction once they make up a large part of the index.
+ * The index can be saved to and loaded from a checksummed snapshot file.
+ */
+public class LessonSearchIndex {
+
+    public static final float TITLE_WEIGHT = 3.0f;
+    public static final float DESCRIPTION_WEIGHT = 1.5f;
+    public static final float TRANSCRIPT_WEIGHT = 1.0f;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MAX_PREFIX_EXPANSIONS = 32;
+    // Changed whenever TextAnalyzer's terms change, so older snapshots are rebuilt
+    private static final long MAGIC = 0x4c4d534958303032L; // "LMSIX002"
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Integer> docByLesson = new HashMap<>();
+    private long[] lessonIds = new long[1024];
+    private long[] versions = new long[1024];
+    private float[] lengths = new float[1024];
+    private final BitSet deleted = new BitSet();
+    private int docCount;
+    private int liveCount;
+    private double totalLength;
+    private volatile boolean dirty;
+
+    public record Hit(long lessonId, float score) {
+    }
+
+    public record Result(List<Hit> hits, int total) {
+    }
+
+    /**
+     * Adds or replaces the document of a lesson. {@code version} identifies the state
+     * of the lesson that was indexed, so reconciliation can tell stale documents apart.
+     */
+    public void put(long lessonId, long version, String title, String description, String transcript) {
+        Map<String, Float> frequencies = new HashMap<>();
+        float length = addFrequencies(frequencies, title, TITLE_WEIGHT)
+                + addFrequencies(frequencies, description, DESCRIPTION_WEIGHT)
+                + addFrequencies(frequencies, transcript, TRANSCRIPT_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(lessonId);
+            int doc = docCount++;
+            ensureCapacity(docCount);
+            lessonIds[doc] = lessonId;
+            versions[doc] = version;
+            lengths[doc] = length;
+            docByLesson.put(lessonId, doc);
+            liveCount++;
+            totalLength += length;
+            for (Map.Entry<String, Float> e : frequencies.entrySet()) {
+                terms.computeIfAbsent(e.getKey(), term -> new Postings()).add(doc, e.getValue());
+            }
+            dirty = true;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long lessonId) {
+        lock.writeLock().lock();
+        try {
+            if (removeLocked(lessonId)) {
+                dirty = true;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Version of every indexed lesson, for reconciliation against the database.
+     */
+    public Map<Long, Long> versions() {
+        lock.readLock().lock();
+        try {
+            Map<Long, Long> result = new HashMap<>(docByLesson.size() * 2);
+            docByLesson.forEach((lessonId, doc) -> result.put(lessonId, versions[doc]));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Ranks lessons matching any term of the query and returns hits {@code [offset, offset + limit)}.
+     * The last query term also matches as a prefix when it is not a term itself,
+     * so partially typed words find something.
+     */
+    public Result search(List<String> queryTerms, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0 || queryTerms.isEmpty()) {
+                return new Result(List.of(), 0);
+            }
+            Map<Postings, Float> weighted = new LinkedHashMap<>();
+            for (int i = 0; i < queryTerms.size(); i++) {
+                String term = queryTerms.get(i);
+                Postings exact = terms.get(term);
+                if (exact != null) {
+                    weighted.merge(exact, 1.0f, Float::sum);
+                } else if (i == queryTerms.size() - 1) {
+                    expandPrefix(term, weighted);
+                }
+            }
+
+            float averageLength = (float) (totalLength / liveCount);
+            float[] scores = new float[docCount];
+            BitSet matched = new BitSet(docCount);
+            for (Map.Entry<Postings, Float> e : weighted.entrySet()) {
+                Postings postings = e.getKey();
+                // Document frequency still counts tombstoned postings until the next compaction
+                double idf = Math.log(1 + Math.max(0, liveCount - postings.size + 0.5) / (postings.size + 0.5));
+                float termWeight = (float) idf * e.getValue();
+                for (int p = 0; p < postings.size; p++) {
+                    int doc = postings.docs[p];
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    float tf = postings.frequencies[p];
+                    float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                    scores[doc] += termWeight * tf * (K1 + 1) / (tf + norm);
+                    matched.set(doc);
+                }
+            }
+
+            // Keep only the best offset + limit documents
+            int wanted = offset + limit;
+            PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, wanted),
+                    (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Long.compare(lessonIds[b], lessonIds[a]));
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                top.offer(doc);
+                if (top.size() > wanted) {
+                    top.poll();
+                }
+            }
+            List<Hit> ranked = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                int doc = top.poll();
+                ranked.add(new Hit(lessonIds[doc], scores[doc]));
+            }
+            Collections.reverse(ranked);
+            List<Hit> page = offset < ranked.size() ? ranked.subList(offset, ranked.size()) : List.of();
+            return new Result(List.copyOf(page), matched.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot to {@code file}: a temp file is written and fsynced, then
+     * atomically moved into place.
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            dirty = false;
+            try (OutputStream raw = Files.newOutputStream(temp)) {
+                CRC32C crc = new CRC32C();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(raw, crc), 1 << 16));
+                out.writeLong(MAGIC);
+                out.writeInt(liveCount);
+                int[] renumbered = new int[docCount];
+                int next = 0;
+                for (int doc = 0; doc < docCount; doc++) {
+                    if (deleted.get(doc)) {
+                        renumbered[doc] = -1;
+                        continue;
+                    }
+                    renumbered[doc] = next++;
+                    out.writeLong(lessonIds[doc]);
+                    out.writeLong(versions[doc]);
+                    out.writeFloat(lengths[doc]);
+                }
+                out.writeInt(terms.size());
+                for (Map.Entry<String, Postings> e : terms.entrySet()) {
+                    Postings postings = e.getValue();
+                    int live = 0;
+                    for (int p = 0; p < postings.size; p++) {
+                        if (renumbered[postings.docs[p]] >= 0) {
+                            live++;
+                        }
+                    }
+                    out.writeUTF(e.getKey());
+                    out.writeInt(live);
+                    for (int p = 0; p < postings.size; p++) {
+                        int doc = renumbered[postings.docs[p]];
+                        if (doc >= 0) {
+                            out.writeInt(doc);
+                            out.writeFloat(postings.frequencies[p]);
+                        }
+                    }
+                }
+                out.flush();
+                // The checksum covers everything before it
+                new DataOutputStream(raw).writeInt((int) crc.getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Replaces the contents of this index with a snapshot. Throws if the file is
+     * truncated or its checksum does not match, leaving the index unchanged.
+     */
+    public void load(Path file) throws IOException {
+        long fileSize = Files.size(file);
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            CRC32C crc = new CRC32C();
+            CheckedInputStream checked = new CheckedInputStream(raw, crc);
+            DataInputStream in = new DataInputStream(checked);
+            if (fileSize < 16 || in.readLong() != MAGIC) {
+                throw new IOException("Not a lesson search index: " + file);
+            }
+            int count = in.readInt();
+            long[] ids = new long[Math.max(count, 1024)];
+            long[] docVersions = new long[ids.length];
+            float[] docLengths = new float[ids.length];
+            Map<Long, Integer> byLesson = new HashMap<>(count * 2);
+            double total = 0;
+            for (int doc = 0; doc < count; doc++) {
+                ids[doc] = in.readLong();
+                docVersions[doc] = in.readLong();
+                docLengths[doc] = in.readFloat();
+                byLesson.put(ids[doc], doc);
+                total += docLengths[doc];
+            }
+            int termCount = in.readInt();
+            TreeMap<String, Postings> loaded = new TreeMap<>();
+            for (int t = 0; t < termCount; t++) {
+                String term = in.readUTF();
+                int size = in.readInt();
+                Postings postings = new Postings(size);
+                for (int p = 0; p < size; p++) {
+                    postings.add(in.readInt(), in.readFloat());
+                }
+                loaded.put(term, postings);
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(raw).readInt() != expected) {
+                throw new IOException("Checksum mismatch in lesson search index " + file);
+            }
+
+            lock.writeLock().lock();
+            try {
+                terms.clear();
+                terms.putAll(loaded);
+                docByLesson.clear();
+                docByLesson.putAll(byLesson);
+                lessonIds = ids;
+                versions = docVersions;
+                lengths = docLengths;
+                deleted.clear();
+                docCount = count;
+                liveCount = count;
+                totalLength = total;
+                dirty = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static float addFrequencies(Map<String, Float> frequencies, String text, float weight) {
+        List<String> fieldTerms = TextAnalyzer.terms(text);
+        for (String term : fieldTerms) {
+            frequencies.merge(term, weight, Float::sum);
+        }
+        return fieldTerms.size() * weight;
+    }
+
+    private void expandPrefix(String prefix, Map<Postings, Float> weighted) {
+        SortedMap<String, Postings> candidates = terms.subMap(prefix, prefix + Character.MAX_VALUE);
+        int expanded = 0;
+        for (Postings postings : candidates.values()) {
+            if (expanded++ == MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            weighted.merge(postings, 1.0f, Float::sum);
+        }
+    }
+
+    private boolean removeLocked(long lessonId) {
+        Integer doc = docByLesson.remove(lessonId);
+        if (doc == null) {
+            return false;
+        }
+        deleted.set(doc);
+        liveCount--;
+        totalLength -= lengths[doc];
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lessonIds.length) {
+            int grown = Math.max(capacity, lessonIds.length * 2);
+            lessonIds = Arrays.copyOf(lessonIds, grown);
+            versions = Arrays.copyOf(versions, grown);
+            lengths = Arrays.copyOf(lengths, grown);
+        }
+    }
+
+    /**
+     * Renumbers live documents and rewrites postings without tombstones once a quarter
+     * of the documents are deleted.
+     */
+    private void compactIfNeeded() {
+        int deletedCount = docCount - liveCount;
+        if (deletedCount < 1024 || deletedCount * 4 < docCount) {
+            return;
+        }
+        int[] renumbered = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = next;
+            lessonIds[next] = lessonIds[doc];
+            versions[next] = versions[doc];
+            lengths[next] = lengths[doc];
+            docByLesson.put(lessonIds[next], next);
+            next++;
+        }
+        Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            int size = 0;
+            for (int p = 0; p < postings.size; p++) {
+                int doc = renumbered[postings.docs[p]];
+                if (doc >= 0) {
+                    postings.docs[size] = doc;
+                    postings.frequencies[size] = postings.frequencies[p];
+                    size++;
+                }
+            }
+            postings.size = size;
+            if (size == 0) {
+                iterator.remove();
+            }
+        }
+        deleted.clear();
+        docCount = next;
+    }
+
+    private static final class Postings {
+
+        private int[] docs;
+        private float[] frequencies;
+        private int size;
+
+        Postings() {
+            this(4);
+        }
+
+        Postings(int capacity) {
+            docs = new int[Math.max(capacity, 1)];
+            frequencies = new float[docs.length];
+        }
+
+        void add(int doc, float frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package uz.edu.lms.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits lesson text into normalized search terms for Uzbek (Latin and Cyrillic),
+ * Russian and English. Terms are lowercased, apostrophe variants are unified so
+ * o‘zbek and o'zbek match, and common inflectional suffixes are stripped by
+ * light, dictionary-free stemmers. Most Uzbek Cyrillic words cannot be told
+ * apart from Russian, so every Cyrillic word yields two terms at the same
+ * position: its Russian stem and its transliteration to Latin with the Uzbek
+ * stem, letting Cyrillic and Latin spellings of a word match each other.
+ * Words with letters only Uzbek has (ў, қ, ғ, ҳ) yield just the Latin term. Queries and documents go through the same
+ * analysis, so a stem only has to be consistent, not linguistically exact.
+ */
+public final class TextAnalyzer {
+
+    private static final int MIN_STEM = 3;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it", "of", "on",
+            "or", "the", "this", "to", "with",
+            "и", "в", "во", "на", "с", "со", "не", "что", "как", "по", "к", "у", "о", "из", "за", "это", "для",
+            "va", "bu", "u", "uchun", "bilan", "ham", "esa", "yoki", "bir", "deb");
+
+    // Uzbek suffixes, tried in order case -> possessive -> plural (reverse of how they attach)
+    private static final String[] UZBEK_CASE = {"gacha", "dagi", "ning", "dan", "tan", "da", "ta", "ga", "ka", "qa", "ni"};
+    private static final String[] UZBEK_POSSESSIVE = {"imiz", "ingiz", "lari", "im", "ing"};
+    private static final String[] UZBEK_PLURAL = {"lar"};
+
+    private static final String[] RUSSIAN_ENDINGS = {
+            "ивши", "ывши", "ивать", "ывать", "ающий", "яющий", "ость", "ости", "ение", "ения", "ений",
+            "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией", "ать", "ять", "ить", "еть", "ует",
+            "ают", "яют", "ешь", "ете", "ила", "ыла", "ена", "ейш", "ая", "яя", "ое", "ее", "ые", "ие", "ый",
+            "ий", "ой", "ей", "ам", "ям", "ах", "ях", "ом", "ем", "ов", "ев", "ию", "ия", "ью",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"};
+
+    private TextAnalyzer() {
+    }
+
+    public record Token(String term, int start, int end) {
+    }
+
+    /**
+     * Terms of {@code text} with their character offsets, stop words removed.
+     */
+    public static List<Token> tokens(String text) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && (!Character.isLetterOrDigit(text.charAt(i)) || isApostrophe(text.charAt(i)))) {
+                i++;
+            }
+            int start = i;
+            StringBuilder word = new StringBuilder();
+            while (i < length) {
+                char c = text.charAt(i);
+                if (isApostrophe(c)) {
+                    // Inside a word (o'zbek, don't) an apostrophe is part of it; otherwise it ends the word
+                    if (i + 1 >= length || !Character.isLetter(text.charAt(i + 1)) || isApostrophe(text.charAt(i + 1))) {
+                        break;
+                    }
+                    word.append('\'');
+                    i++;
+                } else if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (!word.isEmpty() && !STOP_WORDS.contains(word.toString())) {
+                for (String term : normalize(word.toString())) {
+                    if (!term.isEmpty() && !STOP_WORDS.contains(term)) {
+                        tokens.add(new Token(term, start, i));
+                    }
+                }
+            }
+        }
+        return tokens;
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (Token token : tokens(text)) {
+            terms.add(token.term());
+        }
+        return terms;
+    }
+
+    private static List<String> normalize(String word) {
+        if (isCyrillic(word)) {
+            word = word.replace('ё', 'е');
+            String latin = stemUzbek(transliterate(word));
+            if (isUzbekCyrillic(word)) {
+                return List.of(latin);
+            }
+            String russian = stemRussian(word);
+            return russian.equals(latin) ? List.of(russian) : List.of(russian, latin);
+        }
+        return List.of(stemEnglish(stemUzbek(word)));
+    }
+
+    private static String stemUzbek(String word) {
+        word = stripFirst(word, UZBEK_CASE);
+        word = stripFirst(word, UZBEK_POSSESSIVE);
+        return stripFirst(word, UZBEK_PLURAL);
+    }
+
+    private static String stemEnglish(String word) {
+        if (word.endsWith("ies") && word.length() > MIN_STEM + 2) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        for (String suffix : new String[]{"ing", "ed", "ly", "es", "s"}) {
+            if (word.endsWith(suffix) && !word.endsWith("ss") && word.length() - suffix.length() >= MIN_STEM) {
+                return word.substring(0, word.length() - suffix.length());
+            }
+        }
+        return word;
+    }
+
+    private static String stemRussian(String word) {
+        if ((word.endsWith("ся") || word.endsWith("сь")) && word.length() - 2 >= MIN_STEM) {
+            word = word.substring(0, word.length() - 2);
+        }
+        return stripFirst(word, RUSSIAN_ENDINGS);
+    }
+
+    private static String stripFirst(String word, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (word.endsWith(suffix) && word.length() - suffix.length() >= MIN_STEM) {
+                return word.substring(0, word.length() - suffix.length());
+            }
+        }
+        return word;
+    }
+
+    private static String transliterate(String word) {
+        StringBuilder latin = new StringBuilder(word.length() + 4);
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == 'е' && (i == 0 || "аеёиоуўэюяъь".indexOf(word.charAt(i - 1)) >= 0)) {
+                // Written "ye" at the start of a word and after a vowel or sign (ер -> yer)
+                latin.append("ye");
+                continue;
+            }
+            latin.append(switch (c) {
+                case 'а' -> "a"; case 'б' -> "b"; case 'в' -> "v"; case 'г' -> "g"; case 'д' -> "d";
+                case 'е' -> "e"; case 'ж' -> "j"; case 'з' -> "z"; case 'и' -> "i"; case 'й' -> "y";
+                case 'к' -> "k"; case 'л' -> "l"; case 'м' -> "m"; case 'н' -> "n"; case 'о' -> "o";
+                case 'п' -> "p"; case 'р' -> "r"; case 'с' -> "s"; case 'т' -> "t"; case 'у' -> "u";
+                case 'ф' -> "f"; case 'х' -> "x"; case 'ц' -> "ts"; case 'ч' -> "ch"; case 'ш' -> "sh";
+                case 'ъ', 'ь' -> "'"; case 'э' -> "e"; case 'ю' -> "yu"; case 'я' -> "ya";
+                case 'ў' -> "o'"; case 'қ' -> "q"; case 'ғ' -> "g'"; case 'ҳ' -> "h";
+                default -> String.valueOf(c);
+            });
+        }
+        return latin.toString();
+    }
+
+    private static boolean isApostrophe(char c) {
+        return c == '\'' || c == '’' || c == '‘' || c == 'ʻ' || c == 'ʼ' || c == '`';
+    }
+
+    private static boolean isCyrillic(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.UnicodeBlock.of(word.charAt(i)) == Character.UnicodeBlock.CYRILLIC) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUzbekCyrillic(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == 'ў' || c == 'қ' || c == 'ғ' || c == 'ҳ') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
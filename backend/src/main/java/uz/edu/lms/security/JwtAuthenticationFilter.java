@@ -23,6 +23,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
 
+    /**
+     * Media byte routes are public or protected by signed URLs; skip JWT parsing and
+     * the user lookup on every range request a player makes.
+     */
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/api/videos/stream/") || path.startsWith("/api/videos/pdf/");
+    }
+
     @Override
     protected void doFilterInternal(
             @NonNull HttpServletRequest request,
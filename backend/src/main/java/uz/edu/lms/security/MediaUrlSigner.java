@@ -0,0 +1,125 @@
+package uz.edu.lms.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Issues and verifies HMAC-signed, expiring media URLs. Verification is a single
+ * constant-time MAC comparison over path, expiry and subject, with no token
+ * parsing or database access, so it is cheap enough for every range request.
+ */
+@Component
+public class MediaUrlSigner {
+
+    public static final String SUBJECT_ATTRIBUTE = MediaUrlSigner.class.getName() + ".subject";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final boolean required;
+    private final ThreadLocal<Mac> macs;
+
+    public MediaUrlSigner(@Value("${media.signing.secret:${jwt.secret}}") String secret,
+                          @Value("${media.signing.ttl:PT6H}") Duration ttl,
+                          @Value("${media.signing.required:false}") boolean required) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.ttl = ttl;
+        this.required = required;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns {@code path} with expiry, subject and signature query parameters. The
+     * subject is the current user, if any, so bandwidth limits can follow the user.
+     */
+    public String sign(String path) {
+        String encodedPath = UriUtils.encodePath(path, StandardCharsets.UTF_8);
+        long expires = Instant.now().plus(ttl).getEpochSecond();
+        String subject = currentSubject();
+        StringBuilder url = new StringBuilder(encodedPath).append("?exp=").append(expires);
+        if (subject != null) {
+            url.append("&sub=").append(UriUtils.encodeQueryParam(subject, StandardCharsets.UTF_8));
+        }
+        return url.append("&sig=").append(signature(encodedPath, expires, subject)).toString();
+    }
+
+    /**
+     * Index of the current half-TTL window. URLs signed in one window stay valid for at
+     * least half the TTL, so a client may keep reusing a response that carries signed
+     * URLs until the window changes.
+     */
+    public long renewalWindow() {
+        return Instant.now().getEpochSecond() / Math.max(1, ttl.getSeconds() / 2);
+    }
+
+    /**
+     * Checks the signature of a media request. Unsigned requests pass only when
+     * signing is not required; a valid signature records the signed subject as a
+     * request attribute.
+     */
+    public boolean verify(HttpServletRequest request) {
+        String sig = request.getParameter("sig");
+        String exp = request.getParameter("exp");
+        if (sig == null || exp == null) {
+            return !required;
+        }
+
+        long expires;
+        try {
+            expires = Long.parseLong(exp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+
+        String subject = request.getParameter("sub");
+        byte[] expected = signature(request.getRequestURI(), expires, subject).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, sig.getBytes(StandardCharsets.US_ASCII))) {
+            return false;
+        }
+        if (subject != null) {
+            request.setAttribute(SUBJECT_ATTRIBUTE, subject);
+        }
+        return true;
+    }
+
+    private String signature(String path, long expires, String subject) {
+        String payload = path + "\n" + expires + "\n" + (subject != null ? subject : "");
+        byte[] mac = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac);
+    }
+
+    private String currentSubject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,252 @@
+package uz.edu.lms.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.storage.StorageBackend;
+import uz.edu.lms.storage.StoredObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for uploaded files. Each distinct content is kept
+ * once under the key blobs/&lt;sha256&gt;, and the public entry in videos/ or pdfs/
+ * is named &lt;sha256&gt;.&lt;ext&gt; and linked to it, so re-uploads of the same file
+ * share storage (on local disk: one inode and one set of page-cache pages; on S3:
+ * one object, the entries being pointers to it, see {@link StorageBackend#reference}).
+ * <p>
+ * Post-processing may rewrite a file after upload. The entries keep their names,
+ * since lessons refer to them, but the new content is stored under its own hash and
+ * a redirect object blob-redirects/&lt;old&gt;.&lt;new&gt; (with a blob-referrers/
+ * twin for the reverse lookup) records which blob the old name now stands for.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobStoreService {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    public static final List<String> MEDIA_FOLDERS = List.of("videos", "pdfs");
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+    private static final String REDIRECTS = "blob-redirects";
+    private static final String REFERRERS = "blob-referrers";
+    private static final int MAX_REDIRECTS = 8;
+
+    private final StorageBackend storageBackend;
+
+    // Redirect target by old hash, "" for none; short-lived so other instances' rewrites show up
+    private final Cache<String, String> redirects = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    /**
+     * Moves {@code source} into the blob store (or drops it if the content is already
+     * stored), links it into {@code folder} and returns the stored file name.
+     */
+    public String store(Path source, String sha256, String folder, String extension) throws IOException {
+        // The same upload was stored and post-processed before: link to the processed content
+        String current = currentHash(sha256);
+        String blobKey = blobKey(current);
+        if (storageBackend.exists(blobKey)) {
+            Files.deleteIfExists(source);
+            log.info("Deduplicated upload against existing blob {}", current);
+        } else {
+            if (!current.equals(sha256)) {
+                dropRedirect(sha256, redirectOf(sha256));
+            }
+            blobKey = blobKey(sha256);
+            storageBackend.put(blobKey, source);
+            log.info("Stored new blob {}", sha256);
+        }
+
+        String fileName = sha256 + extension.toLowerCase();
+        storageBackend.reference(blobKey, folder + "/" + fileName);
+        return fileName;
+    }
+
+    /**
+     * Replaces the content behind {@code entryKey}, and behind every other entry that
+     * shares its blob, with {@code processed} while keeping the entry names. Used by
+     * post-processing stages that rewrite a stored file. The processed content is
+     * stored as a blob of its own and the old blob is deleted; the redirect is recorded
+     * before any entry is relinked, so a retry after a crash finishes the job.
+     */
+    public void replace(String entryKey, Path processed) throws IOException {
+        String sha256 = hashOf(StorageBackend.splitKey(entryKey)[1]);
+        if (sha256 == null) {
+            storageBackend.put(entryKey, processed);
+            return;
+        }
+        String previous = currentHash(sha256);
+        String processedSha = sha256(processed);
+        String blobKey = blobKey(processedSha);
+        if (storageBackend.exists(blobKey)) {
+            Files.deleteIfExists(processed);
+        } else {
+            storageBackend.put(blobKey, processed);
+        }
+        if (!processedSha.equals(sha256)) {
+            storageBackend.write(REFERRERS + "/" + processedSha + "." + sha256, InputStream.nullInputStream(), 0);
+            storageBackend.write(REDIRECTS + "/" + sha256 + "." + processedSha, InputStream.nullInputStream(), 0);
+            redirects.put(sha256, processedSha);
+        }
+
+        for (String folder : MEDIA_FOLDERS) {
+            for (StoredObject entry : storageBackend.list(folder + "/" + sha256)) {
+                storageBackend.reference(blobKey, entry.key());
+                // Precompressed copies of the old content are stale now
+                storageBackend.delete(gzipVariantKey(entry.key()));
+            }
+        }
+
+        if (processedSha.equals(sha256)) {
+            return;
+        }
+        // Nothing is left under the old name: its entries now hold the processed content
+        storageBackend.delete(blobKey(sha256));
+        if (!previous.equals(sha256) && !previous.equals(processedSha)) {
+            // Rewritten a second time: the intermediate blob may have no users left
+            dropRedirect(sha256, previous);
+            releaseBlob(previous);
+        }
+        log.info("Replaced blob {} with processed content {}", sha256, processedSha);
+    }
+
+    /**
+     * Hash of the blob holding the content of files named {@code sha256}: the name
+     * itself, or the processed content's hash once {@link #replace} rewrote them.
+     */
+    public String currentHash(String sha256) throws IOException {
+        String current = sha256;
+        for (int i = 0; i < MAX_REDIRECTS; i++) {
+            String next = redirectOf(current);
+            if (next == null) {
+                break;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * Removes a public entry and, if no other entry refers to the same content, its blob.
+     * Returns the number of bytes freed in storage.
+     */
+    public long unlink(String key) throws IOException {
+        Optional<StoredObject> entry = storageBackend.stat(key);
+        if (entry.isEmpty()) {
+            return 0;
+        }
+        storageBackend.delete(key);
+        String sha256 = hashOf(entry.get().name());
+        if (sha256 == null) {
+            storageBackend.delete(gzipVariantKey(key));
+            return entry.get().size();
+        }
+
+        if (!releaseBlob(sha256)) {
+            return 0;
+        }
+        storageBackend.delete(gzipVariantKey(key));
+        return entry.get().size();
+    }
+
+    /**
+     * Deletes the blob of {@code sha256} unless an entry still refers to it, directly or
+     * through a redirect. Returns true if the content was freed.
+     */
+    public boolean releaseBlob(String sha256) throws IOException {
+        for (String folder : MEDIA_FOLDERS) {
+            if (!storageBackend.list(folder + "/" + sha256).isEmpty()) {
+                return false;
+            }
+        }
+        if (!storageBackend.list(REFERRERS + "/" + sha256 + ".").isEmpty()) {
+            // Rewritten files named after another hash hold this content
+            return false;
+        }
+        String next = redirectOf(sha256);
+        if (next != null) {
+            // The blob went away when the files were rewritten; release what they point to now
+            dropRedirect(sha256, next);
+            return releaseBlob(next);
+        }
+        storageBackend.delete(blobKey(sha256));
+        log.info("Removed blob {} after its last reference was deleted", sha256);
+        return true;
+    }
+
+    private String redirectOf(String sha256) throws IOException {
+        String next = redirects.getIfPresent(sha256);
+        if (next == null) {
+            List<StoredObject> found = storageBackend.list(REDIRECTS + "/" + sha256 + ".");
+            next = found.isEmpty() ? "" : found.get(0).name().substring(sha256.length() + 1);
+            redirects.put(sha256, next);
+        }
+        return next.isEmpty() ? null : next;
+    }
+
+    private void dropRedirect(String from, String to) throws IOException {
+        storageBackend.delete(REDIRECTS + "/" + from + "." + to);
+        storageBackend.delete(REFERRERS + "/" + to + "." + from);
+        redirects.invalidate(from);
+    }
+
+    public String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String blobKey(String sha256) {
+        return "blobs/" + sha256;
+    }
+
+    /**
+     * Key of the gzip-precompressed variant of a public entry. Variants live in their
+     * own folder so they are neither listed in the catalog nor counted as blob references.
+     */
+    public static String gzipVariantKey(String entryKey) {
+        return "variants/" + StorageBackend.splitKey(entryKey)[1] + ".gz";
+    }
+
+    /**
+     * Returns the content hash encoded in a stored file name, or null for legacy (UUID) names.
+     */
+    public static String hashOf(String fileName) {
+        int dot = fileName.indexOf('.');
+        String base = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        return SHA256_HEX.matcher(base).matches() ? base : null;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
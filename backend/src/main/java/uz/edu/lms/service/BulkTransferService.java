@@ -0,0 +1,685 @@
+package uz.edu.lms.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.edu.lms.dto.BulkImportResult;
+import uz.edu.lms.dto.BulkRecord;
+import uz.edu.lms.entity.Question;
+import uz.edu.lms.entity.VideoLesson;
+import uz.edu.lms.exception.ResourceNotFoundException;
+import uz.edu.lms.repository.CourseRepository;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk import and export of courses, modules, lessons and quizzes as NDJSON, one
+ * {@link BulkRecord} per line. Imports are parsed as a stream and written in chunks:
+ * each chunk is one transaction whose rows go out as JDBC batches, a table at a time,
+ * with ids taken from the entity sequences up front to link the next level. A chunk that fails is
+ * replayed record by record so that only the offending lines are reported. Exports
+ * stream query results straight to the response.
+ */
+@Slf4j
+@Service
+public class BulkTransferService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int EXPORT_FETCH_SIZE = 500;
+    // allocationSize of the entity id sequences
+    private static final int ID_BLOCK = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate exportTransactionTemplate;
+    private final Dialect dialect;
+    private final ObjectMapper objectMapper;
+    private final CourseRepository courseRepository;
+    private final LessonCache lessonCache;
+    private final LessonSearchService lessonSearchService;
+    private final int chunkSize;
+
+    public BulkTransferService(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               EntityManagerFactory entityManagerFactory,
+                               ObjectMapper objectMapper,
+                               CourseRepository courseRepository,
+                               LessonCache lessonCache,
+                               LessonSearchService lessonSearchService,
+                               @Value("${bulk.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate.setFetchSize(EXPORT_FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // PostgreSQL only honours the fetch size inside a transaction
+        this.exportTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.exportTransactionTemplate.setReadOnly(true);
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.objectMapper = objectMapper;
+        this.courseRepository = courseRepository;
+        this.lessonCache = lessonCache;
+        this.lessonSearchService = lessonSearchService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports NDJSON records; courses are assigned to {@code teacherId}. Parent records
+     * must come before the records that refer to them.
+     */
+    public BulkImportResult importRecords(InputStream in, Long teacherId) throws IOException {
+        long started = System.currentTimeMillis();
+        ImportRun run = new ImportRun(teacherId);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            BulkRecord record;
+            try {
+                record = objectMapper.readValue(line, BulkRecord.class);
+            } catch (JsonProcessingException e) {
+                run.fail(lineNumber, null, "Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            String error = run.accept(record);
+            if (error != null) {
+                run.fail(lineNumber, record.getRef(), error);
+                continue;
+            }
+            chunk.add(new Pending(lineNumber, record));
+            if (chunk.size() >= chunkSize) {
+                flush(run, chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        flush(run, chunk);
+
+        if (run.lessons > 0) {
+            lessonSearchService.reconcile();
+        }
+        BulkImportResult result = BulkImportResult.builder()
+                .courses(run.courses)
+                .modules(run.modules)
+                .lessons(run.lessons)
+                .quizzes(run.quizzes)
+                .failed(run.failed)
+                .elapsedMillis(System.currentTimeMillis() - started)
+                .errors(run.errors)
+                .build();
+        log.info("Bulk import: {} courses, {} modules, {} lessons, {} quizzes, {} failed in {} ms",
+                result.getCourses(), result.getModules(), result.getLessons(), result.getQuizzes(),
+                result.getFailed(), result.getElapsedMillis());
+        return result;
+    }
+
+    private void flush(ImportRun run, List<Pending> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            write(run, chunk);
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                Pending pending = chunk.get(0);
+                run.reject(pending, NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                return;
+            }
+            log.debug("Bulk import chunk failed, replaying its {} records one by one", chunk.size(), e);
+            for (Pending pending : chunk) {
+                flush(run, List.of(pending));
+            }
+        }
+    }
+
+    /**
+     * Writes one chunk in a single transaction and, once it commits, makes its refs
+     * visible to later records.
+     */
+    private void write(ImportRun run, List<Pending> chunk) {
+        List<BulkRecord> courses = new ArrayList<>();
+        List<BulkRecord> modules = new ArrayList<>();
+        List<BulkRecord> lessons = new ArrayList<>();
+        List<BulkRecord> quizzes = new ArrayList<>();
+        for (Pending pending : chunk) {
+            switch (pending.record().getType()) {
+                case "course" -> courses.add(pending.record());
+                case "module" -> modules.add(pending.record());
+                case "lesson" -> lessons.add(pending.record());
+                default -> quizzes.add(pending.record());
+            }
+        }
+        Map<String, Long> courseIds = new HashMap<>();
+        Map<String, Long> moduleIds = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = insertWithIds(
+                    "courses_seq", "INSERT INTO courses (id, title, description, image_url, teacher_id, active, created_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    courses, (ps, course) -> {
+                        ps.setString(2, course.getTitle());
+                        ps.setString(3, course.getDescription());
+                        ps.setString(4, course.getImageUrl());
+                        ps.setObject(5, run.teacherId, Types.BIGINT);
+                        ps.setBoolean(6, course.getActive() == null || course.getActive());
+                        ps.setObject(7, now);
+                    });
+            putRefs(courseIds, courses, ids);
+
+            ids = insertWithIds(
+                    "modules_seq", "INSERT INTO modules (id, course_id, title, description, order_number, created_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?)",
+                    modules, (ps, module) -> {
+                        ps.setLong(2, module.getCourseId() != null ? module.getCourseId()
+                                : run.resolve(courseIds, run.courseIds, module.getCourse(), "course"));
+                        ps.setString(3, module.getTitle());
+                        ps.setString(4, module.getDescription());
+                        ps.setInt(5, module.getOrderNumber());
+                        ps.setObject(6, now);
+                    });
+            putRefs(moduleIds, modules, ids);
+
+            ids = insertWithIds(
+                    "video_lessons_seq", "INSERT INTO video_lessons (id, module_id, title, description, video_url, "
+                            + "video_type, duration, thumbnail_url, pdf_url, pdf_file_name, created_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    lessons, (ps, lesson) -> {
+                        ps.setObject(2, lesson.getModule() != null
+                                ? run.resolve(moduleIds, run.moduleIds, lesson.getModule(), "module") : null, Types.BIGINT);
+                        ps.setString(3, lesson.getTitle());
+                        ps.setString(4, lesson.getDescription());
+                        ps.setString(5, lesson.getVideoUrl());
+                        ps.setString(6, (lesson.getVideoUrl().startsWith("videos/")
+                                ? VideoLesson.VideoType.UPLOAD : VideoLesson.VideoType.URL).name());
+                        ps.setObject(7, lesson.getDuration(), Types.INTEGER);
+                        ps.setString(8, lesson.getThumbnailUrl());
+                        ps.setString(9, lesson.getPdfUrl());
+                        ps.setString(10, lesson.getPdfFileName());
+                        ps.setObject(11, now);
+                    });
+            List<Transcript> transcripts = new ArrayList<>();
+            for (int i = 0; i < lessons.size(); i++) {
+                String text = lessons.get(i).getTranscript();
+                if (text != null && !text.isEmpty()) {
+                    transcripts.add(new Transcript(ids.get(i), text));
+                }
+            }
+            insert("INSERT INTO lesson_transcripts (lesson_id, content, length, updated_at) VALUES (?, ?, ?, ?)",
+                    transcripts, (ps, transcript) -> {
+                        ps.setLong(1, transcript.lessonId());
+                        ps.setBytes(2, LessonTranscriptService.compress(transcript.text()));
+                        ps.setInt(3, transcript.text().length());
+                        ps.setObject(4, now);
+                    });
+
+            insertQuizzes(run, quizzes, moduleIds, now);
+            if (!lessons.isEmpty() || !modules.isEmpty()) {
+                lessonCache.invalidate();
+            }
+        });
+
+        run.courseIds.putAll(courseIds);
+        run.moduleIds.putAll(moduleIds);
+        run.courses += courses.size();
+        run.modules += modules.size();
+        run.lessons += lessons.size();
+        run.quizzes += quizzes.size();
+    }
+
+    private void insertQuizzes(ImportRun run, List<BulkRecord> quizzes, Map<String, Long> moduleIds, LocalDateTime now) {
+        List<Long> quizIds = insertWithIds(
+                "quizzes_seq", "INSERT INTO quizzes (id, module_id, title, description, time_limit, max_attempts, passing_score, "
+                        + "created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                quizzes, (ps, quiz) -> {
+                    ps.setLong(2, run.resolve(moduleIds, run.moduleIds, quiz.getModule(), "module"));
+                    ps.setString(3, quiz.getTitle());
+                    ps.setString(4, quiz.getDescription());
+                    ps.setObject(5, quiz.getTimeLimit(), Types.INTEGER);
+                    ps.setObject(6, quiz.getMaxAttempts() != null ? quiz.getMaxAttempts() : 2, Types.INTEGER);
+                    ps.setInt(7, quiz.getPassingScore() != null ? quiz.getPassingScore() : 70);
+                    ps.setObject(8, now);
+                });
+
+        List<Child<BulkRecord.QuestionRecord>> questions = new ArrayList<>();
+        for (int i = 0; i < quizzes.size(); i++) {
+            if (quizzes.get(i).getQuestions() != null) {
+                for (BulkRecord.QuestionRecord question : quizzes.get(i).getQuestions()) {
+                    questions.add(new Child<>(quizIds.get(i), question));
+                }
+            }
+        }
+        List<Long> questionIds = insertWithIds(
+                "questions_seq", "INSERT INTO questions (id, quiz_id, question_text, type, points, order_number, explanation) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                questions, (ps, child) -> {
+                    BulkRecord.QuestionRecord question = child.value();
+                    ps.setLong(2, child.parentId());
+                    ps.setString(3, question.getQuestionText());
+                    ps.setString(4, question.getType());
+                    ps.setInt(5, question.getPoints() != null ? question.getPoints() : 1);
+                    ps.setObject(6, question.getOrderNumber(), Types.INTEGER);
+                    ps.setString(7, question.getExplanation());
+                });
+
+        List<Child<BulkRecord.OptionRecord>> options = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            if (questions.get(i).value().getOptions() != null) {
+                for (BulkRecord.OptionRecord option : questions.get(i).value().getOptions()) {
+                    options.add(new Child<>(questionIds.get(i), option));
+                }
+            }
+        }
+        insertWithIds("question_options_seq",
+                "INSERT INTO question_options (id, question_id, option_text, is_correct, match_text, order_number) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                options, (ps, child) -> {
+                    BulkRecord.OptionRecord option = child.value();
+                    ps.setLong(2, child.parentId());
+                    ps.setString(3, option.getOptionText());
+                    ps.setBoolean(4, Boolean.TRUE.equals(option.getIsCorrect()));
+                    ps.setString(5, option.getMatchText());
+                    ps.setObject(6, option.getOrderNumber(), Types.INTEGER);
+                });
+    }
+
+    /**
+     * Inserts rows with ids drawn from {@code sequence}; the setter fills the parameters
+     * after the leading id.
+     */
+    private <T> List<Long> insertWithIds(String sequence, String sql, List<T> rows,
+                                         ParameterizedPreparedStatementSetter<T> setter) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = allocateIds(sequence, rows.size());
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, ids.get(i));
+                setter.setValues(ps, rows.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Takes ids the way Hibernate's pooled optimizer does, where a sequence value
+     * {@code v} reserves the block {@code (v - ID_BLOCK, v]}, so they never collide
+     * with ids handed out to entities.
+     */
+    private List<Long> allocateIds(String sequence, int count) {
+        String nextValue = dialect.getSequenceSupport().getSequenceNextValString(sequence);
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            long high = jdbcTemplate.queryForObject(nextValue, Long.class);
+            for (long id = Math.max(1, high - ID_BLOCK + 1); id <= high && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private <T> void insert(String sql, List<T> rows, ParameterizedPreparedStatementSetter<T> setter) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows, rows.size(), setter);
+        }
+    }
+
+    private static void putRefs(Map<String, Long> target, List<BulkRecord> records, List<Long> ids) {
+        for (int i = 0; i < records.size(); i++) {
+            if (records.get(i).getRef() != null) {
+                target.put(records.get(i).getRef(), ids.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes every course (or only {@code courseId}) with its modules, lessons and
+     * quizzes, parents first, in the format {@link #importRecords} reads back.
+     */
+    public void exportRecords(Long courseId, OutputStream out) throws IOException {
+        if (courseId != null && !courseRepository.existsById(courseId)) {
+            throw new ResourceNotFoundException("Course", "id", courseId);
+        }
+        try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+            exportTransactionTemplate.executeWithoutResult(status -> {
+                exportCourses(courseId, writer);
+                exportModules(courseId, writer);
+                exportLessons(courseId, writer);
+                exportQuizzes(courseId, writer);
+            });
+            out.write('\n');
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void exportCourses(Long courseId, SequenceWriter writer) {
+        query("SELECT id, title, description, image_url, active FROM courses"
+                + (courseId != null ? " WHERE id = ?" : "") + " ORDER BY id", courseId, rs -> write(writer, BulkRecord.builder()
+                .type("course")
+                .ref("c" + rs.getLong(1))
+                .title(rs.getString(2))
+                .description(rs.getString(3))
+                .imageUrl(rs.getString(4))
+                .active(rs.getBoolean(5))
+                .build()));
+    }
+
+    private void exportModules(Long courseId, SequenceWriter writer) {
+        query("SELECT id, course_id, title, description, order_number FROM modules"
+                + (courseId != null ? " WHERE course_id = ?" : "") + " ORDER BY course_id, order_number, id", courseId,
+                rs -> write(writer, BulkRecord.builder()
+                        .type("module")
+                        .ref("m" + rs.getLong(1))
+                        .course("c" + rs.getLong(2))
+                        .title(rs.getString(3))
+                        .description(rs.getString(4))
+                        .orderNumber(rs.getInt(5))
+                        .build()));
+    }
+
+    private void exportLessons(Long courseId, SequenceWriter writer) {
+        query("SELECT vl.module_id, vl.title, vl.description, vl.video_url, vl.duration, vl.thumbnail_url, vl.pdf_url, "
+                + "vl.pdf_file_name, t.content FROM video_lessons vl "
+                + "LEFT JOIN lesson_transcripts t ON t.lesson_id = vl.id "
+                + (courseId != null ? "JOIN modules m ON m.id = vl.module_id WHERE m.course_id = ? " : "")
+                + "ORDER BY vl.id", courseId, rs -> {
+            Long moduleId = rs.getObject(1, Long.class);
+            byte[] transcript = rs.getBytes(9);
+            write(writer, BulkRecord.builder()
+                    .type("lesson")
+                    .module(moduleId != null ? "m" + moduleId : null)
+                    .title(rs.getString(2))
+                    .description(rs.getString(3))
+                    .videoUrl(rs.getString(4))
+                    .duration(rs.getObject(5, Integer.class))
+                    .thumbnailUrl(rs.getString(6))
+                    .pdfUrl(rs.getString(7))
+                    .pdfFileName(rs.getString(8))
+                    .transcript(transcript != null ? LessonTranscriptService.decompress(transcript) : null)
+                    .build());
+        });
+    }
+
+    /**
+     * Quiz rows come joined with their questions and options, ordered by quiz, and are
+     * folded into one record per quiz as the result set is read.
+     */
+    private void exportQuizzes(Long courseId, SequenceWriter writer) {
+        BulkRecord[] current = new BulkRecord[1];
+        long[] currentQuiz = {-1};
+        long[] currentQuestion = {-1};
+        query("SELECT q.id, q.module_id, q.title, q.description, q.time_limit, q.max_attempts, q.passing_score, "
+                + "qu.id, qu.question_text, qu.type, qu.points, qu.order_number, qu.explanation, "
+                + "o.option_text, o.is_correct, o.order_number, o.match_text FROM quizzes q "
+                + "LEFT JOIN questions qu ON qu.quiz_id = q.id "
+                + "LEFT JOIN question_options o ON o.question_id = qu.id "
+                + (courseId != null ? "JOIN modules m ON m.id = q.module_id WHERE m.course_id = ? " : "")
+                + "ORDER BY q.id, qu.order_number, qu.id, o.order_number, o.id", courseId, rs -> {
+            long quizId = rs.getLong(1);
+            if (quizId != currentQuiz[0]) {
+                if (current[0] != null) {
+                    write(writer, current[0]);
+                }
+                currentQuiz[0] = quizId;
+                currentQuestion[0] = -1;
+                current[0] = BulkRecord.builder()
+                        .type("quiz")
+                        .module("m" + rs.getLong(2))
+                        .title(rs.getString(3))
+                        .description(rs.getString(4))
+                        .timeLimit(rs.getObject(5, Integer.class))
+                        .maxAttempts(rs.getObject(6, Integer.class))
+                        .passingScore(rs.getInt(7))
+                        .questions(new ArrayList<>())
+                        .build();
+            }
+            Long questionId = rs.getObject(8, Long.class);
+            if (questionId == null) {
+                return;
+            }
+            List<BulkRecord.QuestionRecord> questions = current[0].getQuestions();
+            if (questionId != currentQuestion[0]) {
+                currentQuestion[0] = questionId;
+                questions.add(BulkRecord.QuestionRecord.builder()
+                        .questionText(rs.getString(9))
+                        .type(rs.getString(10))
+                        .points(rs.getInt(11))
+                        .orderNumber(rs.getObject(12, Integer.class))
+                        .explanation(rs.getString(13))
+                        .options(new ArrayList<>())
+                        .build());
+            }
+            String optionText = rs.getString(14);
+            if (optionText != null) {
+                questions.get(questions.size() - 1).getOptions().add(BulkRecord.OptionRecord.builder()
+                        .optionText(optionText)
+                        .isCorrect(rs.getBoolean(15))
+                        .matchText(rs.getString(17))
+                        .orderNumber(rs.getObject(16, Integer.class))
+                        .build());
+            }
+        });
+        if (current[0] != null) {
+            write(writer, current[0]);
+        }
+    }
+
+    private void query(String sql, Long courseId, RowWriter rowWriter) {
+        if (courseId != null) {
+            exportJdbcTemplate.query(sql, rowWriter::write, courseId);
+        } else {
+            exportJdbcTemplate.query(sql, rowWriter::write);
+        }
+    }
+
+    private static void write(SequenceWriter writer, BulkRecord record) {
+        try {
+            writer.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException;
+    }
+
+    private record Pending(long line, BulkRecord record) {
+    }
+
+    private record Transcript(Long lessonId, String text) {
+    }
+
+    private record Child<T>(Long parentId, T value) {
+    }
+
+    /**
+     * State of one import: refs of committed records, refs and module slots claimed by
+     * accepted records, counters and the error report.
+     */
+    private final class ImportRun {
+
+        private final Long teacherId;
+        private final Map<String, Long> courseIds = new HashMap<>();
+        private final Map<String, Long> moduleIds = new HashMap<>();
+        private final Set<String> courseRefs = new HashSet<>();
+        private final Set<String> moduleRefs = new HashSet<>();
+        private final Set<String> modulesWithLesson = new HashSet<>();
+        private final Set<String> modulesWithQuiz = new HashSet<>();
+        private final Map<Long, Boolean> existingCourses = new HashMap<>();
+        private final List<BulkImportResult.RecordError> errors = new ArrayList<>();
+        private int courses;
+        private int modules;
+        private int lessons;
+        private int quizzes;
+        private int failed;
+
+        private ImportRun(Long teacherId) {
+            this.teacherId = teacherId;
+        }
+
+        /**
+         * Validates a record against the records accepted so far and claims its ref and
+         * module slot; returns the reason it is rejected, or null.
+         */
+        private String accept(BulkRecord record) {
+            if (record.getType() == null) {
+                return "type is required";
+            }
+            if (record.getTitle() == null || record.getTitle().isBlank()) {
+                return "title is required";
+            }
+            switch (record.getType()) {
+                case "course" -> {
+                    if (record.getRef() != null && !courseRefs.add(record.getRef())) {
+                        return "Duplicate course ref " + record.getRef();
+                    }
+                }
+                case "module" -> {
+                    if (record.getCourseId() != null) {
+                        if (!existingCourses.computeIfAbsent(record.getCourseId(), courseRepository::existsById)) {
+                            return "Course " + record.getCourseId() + " does not exist";
+                        }
+                    } else if (record.getCourse() == null || !courseRefs.contains(record.getCourse())) {
+                        return "Unknown course ref " + record.getCourse();
+                    }
+                    if (record.getOrderNumber() == null) {
+                        return "orderNumber is required";
+                    }
+                    if (record.getRef() != null && !moduleRefs.add(record.getRef())) {
+                        return "Duplicate module ref " + record.getRef();
+                    }
+                }
+                case "lesson" -> {
+                    if (record.getVideoUrl() == null || record.getVideoUrl().isBlank()) {
+                        return "videoUrl is required";
+                    }
+                    if (record.getModule() != null) {
+                        if (!moduleRefs.contains(record.getModule())) {
+                            return "Unknown module ref " + record.getModule();
+                        }
+                        if (!modulesWithLesson.add(record.getModule())) {
+                            return "Module already has a video lesson";
+                        }
+                    }
+                }
+                case "quiz" -> {
+                    String error = validateQuestions(record.getQuestions());
+                    if (error != null) {
+                        return error;
+                    }
+                    if (record.getModule() == null || !moduleRefs.contains(record.getModule())) {
+                        return "Unknown module ref " + record.getModule();
+                    }
+                    if (!modulesWithQuiz.add(record.getModule())) {
+                        return "Module already has a quiz";
+                    }
+                }
+                default -> {
+                    return "Unknown type " + record.getType();
+                }
+            }
+            return null;
+        }
+
+        private String validateQuestions(List<BulkRecord.QuestionRecord> questions) {
+            if (questions == null) {
+                return null;
+            }
+            for (BulkRecord.QuestionRecord question : questions) {
+                if (question.getQuestionText() == null || question.getQuestionText().isBlank()) {
+                    return "questionText is required";
+                }
+                try {
+                    Question.QuestionType.valueOf(String.valueOf(question.getType()));
+                } catch (IllegalArgumentException e) {
+                    return "Unknown question type " + question.getType();
+                }
+                if (question.getOptions() != null
+                        && question.getOptions().stream().anyMatch(option -> option.getOptionText() == null)) {
+                    return "optionText is required";
+                }
+                if ("MATCHING".equals(question.getType()) && (question.getOptions() == null
+                        || question.getOptions().stream().anyMatch(option -> option.getMatchText() == null))) {
+                    return "matchText is required for every MATCHING option";
+                }
+            }
+            return null;
+        }
+
+        private long resolve(Map<String, Long> chunkIds, Map<String, Long> committedIds, String ref, String kind) {
+            Long id = chunkIds.get(ref);
+            if (id == null) {
+                id = committedIds.get(ref);
+            }
+            if (id == null) {
+                // Its record was accepted but failed to write
+                throw new IllegalArgumentException("Unknown " + kind + " ref " + ref);
+            }
+            return id;
+        }
+
+        /**
+         * Reports a record that failed to write and releases what it claimed.
+         */
+        private void reject(Pending pending, String message) {
+            BulkRecord record = pending.record();
+            switch (record.getType()) {
+                case "course" -> courseRefs.remove(record.getRef());
+                case "module" -> moduleRefs.remove(record.getRef());
+                case "lesson" -> modulesWithLesson.remove(record.getModule());
+                default -> modulesWithQuiz.remove(record.getModule());
+            }
+            fail(pending.line(), record.getRef(), message);
+        }
+
+        private void fail(long line, String ref, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BulkImportResult.RecordError(line, ref, message));
+            }
+        }
+    }
+}
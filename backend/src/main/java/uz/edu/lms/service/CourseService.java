@@ -2,8 +2,14 @@ package uz.edu.lms.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uz.edu.lms.datasource.ReplicaRead;
+import uz.edu.lms.dto.CourseOutline;
 import uz.edu.lms.entity.Course;
+import uz.edu.lms.entity.Module;
+import uz.edu.lms.entity.Quiz;
 import uz.edu.lms.entity.User;
+import uz.edu.lms.entity.VideoLesson;
 import uz.edu.lms.exception.ResourceNotFoundException;
 import uz.edu.lms.repository.CourseRepository;
 import uz.edu.lms.repository.UserRepository;
@@ -16,6 +22,7 @@ public class CourseService {
 
     private final CourseRepository courseRepository;
     private final UserRepository userRepository;
+    private final LessonCache lessonCache;
 
     public List<Course> getAllCourses() {
         return courseRepository.findAll();
@@ -30,6 +37,17 @@ public class CourseService {
                 .orElseThrow(() -> new ResourceNotFoundException("Course", "id", id));
     }
 
+    /**
+     * The course tree read in one query and cached until the next catalog write.
+     */
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public CourseOutline getOutline(Long id) {
+        return lessonCache.get("outline", id, () -> courseRepository.findOutlineById(id)
+                .map(CourseService::toOutline)
+                .orElseThrow(() -> new ResourceNotFoundException("Course", "id", id)));
+    }
+
     public Course createCourse(Course course, Long teacherId) {
         User teacher = userRepository.findById(teacherId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", teacherId));
@@ -43,10 +61,53 @@ public class CourseService {
         course.setDescription(courseDetails.getDescription());
         course.setImageUrl(courseDetails.getImageUrl());
         course.setActive(courseDetails.getActive());
-        return courseRepository.save(course);
+        Course saved = courseRepository.save(course);
+        // Lesson reads include the course title
+        lessonCache.invalidate();
+        return saved;
     }
 
     public void deleteCourse(Long id) {
         courseRepository.deleteById(id);
+        lessonCache.invalidate();
+    }
+
+    private static CourseOutline toOutline(Course course) {
+        User teacher = course.getTeacher();
+        return CourseOutline.builder()
+                .id(course.getId())
+                .title(course.getTitle())
+                .description(course.getDescription())
+                .imageUrl(course.getImageUrl())
+                .teacherName(teacher != null ? teacher.getFirstName() + " " + teacher.getLastName() : null)
+                .active(course.getActive())
+                .modules(course.getModules().stream().map(CourseService::toOutline).toList())
+                .build();
+    }
+
+    private static CourseOutline.ModuleOutline toOutline(Module module) {
+        VideoLesson lesson = module.getVideoLesson();
+        Quiz quiz = module.getQuiz();
+        return CourseOutline.ModuleOutline.builder()
+                .id(module.getId())
+                .title(module.getTitle())
+                .description(module.getDescription())
+                .orderNumber(module.getOrderNumber())
+                .lesson(lesson == null ? null : CourseOutline.LessonSummary.builder()
+                        .id(lesson.getId())
+                        .title(lesson.getTitle())
+                        .videoType(lesson.getVideoType() != null ? lesson.getVideoType().name() : null)
+                        .duration(lesson.getDuration())
+                        .thumbnailUrl(lesson.getThumbnailUrl())
+                        .hasPdf(lesson.getPdfUrl() != null)
+                        .build())
+                .quiz(quiz == null ? null : CourseOutline.QuizSummary.builder()
+                        .id(quiz.getId())
+                        .title(quiz.getTitle())
+                        .timeLimit(quiz.getTimeLimit())
+                        .maxAttempts(quiz.getMaxAttempts())
+                        .passingScore(quiz.getPassingScore())
+                        .build())
+                .build();
     }
 }
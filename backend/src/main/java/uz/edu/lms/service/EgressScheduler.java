@@ -0,0 +1,357 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.security.MediaUrlSigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fair-share bandwidth scheduler for media responses. Every stream draws from its
+ * client's token bucket (the user, taken from a signed URL or the security
+ * context, or the IP for anonymous requests) and from a global
+ * bucket, and a single grant never exceeds the stream's equal share of either,
+ * so a download manager opening many connections cannot starve other viewers.
+ * Bodies are written with non-blocking servlet I/O: a throttled stream parks on
+ * a shared timer instead of holding a thread.
+ */
+@Slf4j
+@Service
+public class EgressScheduler {
+
+    private static final long MIN_GRANT = 16 * 1024;
+
+    private final long globalLimit;
+    private final long perClientLimit;
+    private final long burstMillis;
+    private final int chunkSize;
+
+    private final TokenBucket globalBucket;
+    private final Map<String, ClientState> clients = new HashMap<>();
+    private final Map<Long, ThrottledStream> streams = new ConcurrentHashMap<>();
+    private final AtomicLong streamIds = new AtomicLong();
+    private final LongAdder totalBytes = new LongAdder();
+    private final ScheduledExecutorService timer;
+
+    public EgressScheduler(@Value("${file.bandwidth.global-limit:0}") long globalLimit,
+                           @Value("${file.bandwidth.per-client-limit:0}") long perClientLimit,
+                           @Value("${file.bandwidth.burst:PT1S}") Duration burst,
+                           @Value("${file.bandwidth.chunk-size:65536}") int chunkSize) {
+        this.globalLimit = globalLimit;
+        this.perClientLimit = perClientLimit;
+        this.burstMillis = burst.toMillis();
+        this.chunkSize = chunkSize;
+        this.globalBucket = globalLimit > 0 ? new TokenBucket(globalLimit, burstMillis) : null;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "egress-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return globalLimit > 0 || perClientLimit > 0;
+    }
+
+    /**
+     * Streams {@code body} as the response body under the bandwidth limits. Status and
+     * headers must already be set; the request is switched to async mode and this
+     * method returns immediately.
+     */
+    public void stream(HttpServletRequest request, HttpServletResponse response, String key,
+                       InputStream body) throws IOException {
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        ThrottledStream stream = new ThrottledStream(streamIds.incrementAndGet(), clientId(request), key,
+                asyncContext, response.getOutputStream(), body);
+        register(stream);
+        asyncContext.addListener(stream);
+        stream.output.setWriteListener(stream);
+    }
+
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> active = new ArrayList<>();
+        for (ThrottledStream stream : streams.values()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("id", stream.id);
+            info.put("client", stream.clientId);
+            info.put("key", stream.key);
+            info.put("bytesSent", stream.bytesSent);
+            info.put("bytesPerSecond", stream.currentRate());
+            info.put("startedAt", stream.startedAt);
+            active.add(info);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("globalLimit", globalLimit);
+        result.put("perClientLimit", perClientLimit);
+        result.put("activeStreams", active.size());
+        result.put("totalBytes", totalBytes.sum());
+        result.put("streams", active);
+        return result;
+    }
+
+    private synchronized void register(ThrottledStream stream) {
+        streams.put(stream.id, stream);
+        ClientState client = clients.computeIfAbsent(stream.clientId,
+                id -> new ClientState(perClientLimit > 0 ? new TokenBucket(perClientLimit, burstMillis) : null));
+        client.streams++;
+    }
+
+    private synchronized void unregister(ThrottledStream stream) {
+        if (streams.remove(stream.id) == null) {
+            return;
+        }
+        ClientState client = clients.get(stream.clientId);
+        if (client != null && --client.streams == 0) {
+            clients.remove(stream.clientId);
+        }
+    }
+
+    /**
+     * Grants up to {@code wanted} bytes to a stream. Returns the number of bytes granted,
+     * or the negated number of nanoseconds to wait before asking again.
+     */
+    private synchronized long acquire(ThrottledStream stream, long wanted) {
+        long now = System.nanoTime();
+        ClientState client = clients.get(stream.clientId);
+        TokenBucket clientBucket = client != null ? client.bucket : null;
+
+        long grant = wanted;
+        if (globalBucket != null) {
+            grant = Math.min(grant, Math.max(MIN_GRANT, globalBucket.capacity / streams.size()));
+            grant = Math.min(grant, globalBucket.available(now));
+        }
+        if (clientBucket != null) {
+            grant = Math.min(grant, Math.max(MIN_GRANT, clientBucket.capacity / client.streams));
+            grant = Math.min(grant, clientBucket.available(now));
+        }
+
+        // Avoid dribbling tiny writes; wait until a reasonable chunk is available
+        long needed = Math.min(wanted, MIN_GRANT);
+        if (grant < needed) {
+            long wait = 0;
+            if (globalBucket != null) {
+                wait = Math.max(wait, globalBucket.nanosUntil(needed, now));
+            }
+            if (clientBucket != null) {
+                wait = Math.max(wait, clientBucket.nanosUntil(needed, now));
+            }
+            return -Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        if (globalBucket != null) {
+            globalBucket.take(grant);
+        }
+        if (clientBucket != null) {
+            clientBucket.take(grant);
+        }
+        return grant;
+    }
+
+    private String clientId(HttpServletRequest request) {
+        Object signedSubject = request.getAttribute(MediaUrlSigner.SUBJECT_ATTRIBUTE);
+        if (signedSubject != null) {
+            return "user:" + signedSubject;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static final class TokenBucket {
+
+        private final long rate;
+        private final long capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(long rate, long burstMillis) {
+            this.rate = rate;
+            this.capacity = Math.max(MIN_GRANT, rate * burstMillis / 1000);
+            this.tokens = capacity;
+        }
+
+        long available(long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * rate / 1e9);
+            refilledAt = now;
+            return (long) tokens;
+        }
+
+        void take(long bytes) {
+            tokens -= bytes;
+        }
+
+        long nanosUntil(long bytes, long now) {
+            double missing = bytes - available(now);
+            return missing <= 0 ? 0 : (long) (missing * 1e9 / rate);
+        }
+    }
+
+    private static final class ClientState {
+
+        private final TokenBucket bucket;
+        private int streams;
+
+        ClientState(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private final class ThrottledStream implements WriteListener, AsyncListener {
+
+        private final long id;
+        private final String clientId;
+        private final String key;
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream output;
+        private final InputStream body;
+        private final byte[] buffer = new byte[chunkSize];
+        private final long startedAt = System.currentTimeMillis();
+        private int bufferPosition;
+        private int bufferLimit;
+        private volatile long bytesSent;
+        private volatile long windowStart = System.nanoTime();
+        private long windowBytes;
+        private volatile long lastRate;
+        private boolean finished;
+
+        ThrottledStream(long id, String clientId, String key, AsyncContext asyncContext,
+                        ServletOutputStream output, InputStream body) {
+            this.id = id;
+            this.clientId = clientId;
+            this.key = key;
+            this.asyncContext = asyncContext;
+            this.output = output;
+            this.body = body;
+        }
+
+        @Override
+        public void onWritePossible() {
+            pump();
+        }
+
+        private synchronized void pump() {
+            if (finished) {
+                return;
+            }
+            try {
+                while (output.isReady()) {
+                    if (bufferPosition == bufferLimit) {
+                        int read = body.read(buffer, 0, buffer.length);
+                        if (read < 0) {
+                            finish();
+                            return;
+                        }
+                        bufferPosition = 0;
+                        bufferLimit = read;
+                    }
+                    long granted = acquire(this, bufferLimit - bufferPosition);
+                    if (granted <= 0) {
+                        timer.schedule(() -> asyncContext.start(this::pump), -granted, TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    output.write(buffer, bufferPosition, (int) granted);
+                    bufferPosition += (int) granted;
+                    record(granted);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Stream {} of {} aborted: {}", id, key, e.getMessage());
+                finish();
+            }
+        }
+
+        private void record(long bytes) {
+            bytesSent += bytes;
+            totalBytes.add(bytes);
+            windowBytes += bytes;
+            long now = System.nanoTime();
+            long elapsed = now - windowStart;
+            if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                lastRate = (long) (windowBytes * 1e9 / elapsed);
+                windowStart = now;
+                windowBytes = 0;
+            }
+        }
+
+        long currentRate() {
+            long elapsed = System.nanoTime() - windowStart;
+            // A stream that has been parked for a while is not sending anything
+            return elapsed > TimeUnit.SECONDS.toNanos(2) ? 0 : lastRate;
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            unregister(this);
+            try {
+                body.close();
+            } catch (IOException e) {
+                log.debug("Failed to close body of stream {}", id, e);
+            }
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container after an error
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            finish();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
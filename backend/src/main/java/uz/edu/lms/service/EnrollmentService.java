@@ -2,6 +2,7 @@ package uz.edu.lms.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import uz.edu.lms.entity.Course;
 import uz.edu.lms.entity.Enrollment;
 import uz.edu.lms.entity.User;
@@ -10,7 +11,12 @@ import uz.edu.lms.repository.CourseRepository;
 import uz.edu.lms.repository.EnrollmentRepository;
 import uz.edu.lms.repository.UserRepository;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -41,6 +47,34 @@ public class EnrollmentService {
         return enrollmentRepository.save(enrollment);
     }
 
+    /**
+     * Enrolls several students in a course at once, skipping those already enrolled.
+     * The students are read in one query and the enrollments inserted as a JDBC batch.
+     */
+    @Transactional
+    public List<Enrollment> enrollStudents(Long courseId, Collection<Long> studentIds) {
+        Course course = courseRepository.findById(courseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
+        Set<Long> enrolled = enrollmentRepository.findByCourse(course).stream()
+                .map(enrollment -> enrollment.getStudent().getId())
+                .collect(Collectors.toSet());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (User student : userRepository.findAllById(studentIds)) {
+            if (!enrolled.contains(student.getId())) {
+                enrollments.add(Enrollment.builder()
+                        .student(student)
+                        .course(course)
+                        .enrolledAt(now)
+                        .progress(0.0)
+                        .status(Enrollment.EnrollmentStatus.ACTIVE)
+                        .build());
+            }
+        }
+        return enrollmentRepository.saveAll(enrollments);
+    }
+
     public Enrollment updateProgress(Long enrollmentId, Double progress) {
         Enrollment enrollment = enrollmentRepository.findById(enrollmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Enrollment", "id", enrollmentId));
@@ -1,54 +1,112 @@
 package uz.edu.lms.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import uz.edu.lms.repository.VideoLessonRepository;
+import uz.edu.lms.storage.StorageBackend;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class FileUploadService {
 
+    private final MediaCatalogService mediaCatalogService;
+    private final BlobStoreService blobStoreService;
+    private final VideoLessonRepository videoLessonRepository;
+    private final StorageBackend storageBackend;
+    private final MediaJobService mediaJobService;
+    private final QuotaService quotaService;
+
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
 
-    public String uploadFile(MultipartFile file, String folder) throws IOException {
-        // Create folder if doesn't exist - use absolute path
-        Path folderPath = Paths.get(uploadDir, folder).toAbsolutePath();
-        log.debug("Creating folder: {}", folderPath);
-        if (!Files.exists(folderPath)) {
-            Files.createDirectories(folderPath);
-            log.info("Folder created: {}", folderPath);
+    public String uploadFile(MultipartFile file, String folder, QuotaService.Owner owner) throws IOException {
+        // Spool into the upload root, hashing on the way, so the final store is a rename
+        Path partialPath = Paths.get(uploadDir, ".partial").toAbsolutePath();
+        Files.createDirectories(partialPath);
+        Path tempFile = partialPath.resolve(UUID.randomUUID() + ".upload");
+
+        MessageDigest digest = sha256Digest();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, tempFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
         }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        return storeFile(tempFile, folder, file.getOriginalFilename(), sha256, owner);
+    }
 
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename != null && originalFilename.contains(".")
-                ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                : "";
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
+    /**
+     * Moves an already written file (e.g. a completed resumable upload) into
+     * the upload folder and returns its relative path.
+     */
+    public String storeFile(Path source, String folder, String originalFilename, QuotaService.Owner owner)
+            throws IOException {
+        return storeFile(source, folder, originalFilename, blobStoreService.sha256(source), owner);
+    }
 
-        // Save file - use absolute path
-        Path filePath = folderPath.resolve(uniqueFilename);
-        log.debug("Saving file to: {}", filePath);
-        file.transferTo(filePath.toFile());
-        log.info("File saved successfully: {}", uniqueFilename);
+    /**
+     * Stores a file whose SHA-256 is already known. Identical content is kept once,
+     * so uploading the same file twice returns the same path. Post-processing runs
+     * in the background once the file is stored, and the size is charged to {@code owner}.
+     */
+    public String storeFile(Path source, String folder, String originalFilename, String sha256,
+                            QuotaService.Owner owner) throws IOException {
+        long size = Files.size(source);
+        String storedFilename = blobStoreService.store(source, sha256, folder, extensionOf(originalFilename));
+        log.info("File saved successfully: {}", storedFilename);
+        mediaCatalogService.onFileStored(folder, storedFilename);
+        quotaService.recordStored(folder + "/" + storedFilename, size, owner);
+        mediaJobService.enqueue(folder + "/" + storedFilename);
 
         // Return relative path
-        return folder + "/" + uniqueFilename;
+        return folder + "/" + storedFilename;
     }
 
+    /**
+     * Deletes a stored file unless a lesson still references it. Since identical
+     * uploads share one path, another lesson may be using the same file.
+     */
     public void deleteFile(String filePath) throws IOException {
-        Path path = Paths.get(uploadDir, filePath);
-        if (Files.exists(path)) {
-            Files.delete(path);
+        String[] parts = StorageBackend.splitKey(filePath);
+        if (!storageBackend.exists(filePath)) {
+            return;
+        }
+        if (videoLessonRepository.countByVideoUrlOrPdfUrl(filePath, filePath) > 0) {
+            log.info("File {} is still referenced by a lesson, keeping it", filePath);
+            return;
+        }
+        blobStoreService.unlink(filePath);
+        mediaCatalogService.onFileDeleted(parts[0], parts[1]);
+        quotaService.recordDeleted(filePath);
+    }
+
+    private String extensionOf(String originalFilename) {
+        return originalFilename != null && originalFilename.contains(".")
+                ? originalFilename.substring(originalFilename.lastIndexOf("."))
+                : "";
+    }
+
+    private MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 }
@@ -0,0 +1,85 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves transcripts left in the old {@code video_lessons.transcript} column of an
+ * existing database into compressed {@code lesson_transcripts} rows at startup. The
+ * column is cleared as each batch is copied, so later startups find nothing to do,
+ * and the lesson's updated_at is bumped so the search index picks the text up. On a
+ * schema without the column (every new database) this is a single failed query.
+ * Once it has run, the column can be dropped by hand.
+ */
+@Slf4j
+@Component
+public class LegacyTranscriptMigration {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyTranscriptMigration(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrate() {
+        long started = System.currentTimeMillis();
+        int migrated = 0;
+        long afterId = 0;
+        while (true) {
+            List<LegacyTranscript> batch;
+            try {
+                batch = jdbcTemplate.query("SELECT v.id, v.transcript FROM video_lessons v"
+                                + " WHERE v.id > ? AND v.transcript IS NOT NULL ORDER BY v.id"
+                                + " FETCH FIRST " + BATCH_SIZE + " ROWS ONLY",
+                        (rs, rowNum) -> new LegacyTranscript(rs.getLong(1), rs.getString(2)), afterId);
+            } catch (BadSqlGrammarException e) {
+                // No legacy column: the schema was created by this version
+                return;
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> copy(batch));
+            migrated += batch.size();
+            afterId = batch.get(batch.size() - 1).lessonId();
+        }
+        if (migrated > 0) {
+            log.info("Moved {} legacy transcripts to lesson_transcripts in {} ms",
+                    migrated, System.currentTimeMillis() - started);
+        }
+    }
+
+    private void copy(List<LegacyTranscript> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        for (LegacyTranscript legacy : batch) {
+            String text = legacy.text();
+            // A row already in lesson_transcripts was written by this version and wins
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM lesson_transcripts WHERE lesson_id = ?", Integer.class, legacy.lessonId());
+            if (!text.isEmpty() && existing != null && existing == 0) {
+                jdbcTemplate.update("INSERT INTO lesson_transcripts (lesson_id, content, length, updated_at)"
+                                + " VALUES (?, ?, ?, ?)",
+                        legacy.lessonId(), LessonTranscriptService.compress(text), text.length(), now);
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE video_lessons SET transcript = NULL, updated_at = ? WHERE id = ?",
+                batch.stream().map(legacy -> new Object[]{now, legacy.lessonId()}).toList());
+    }
+
+    private record LegacyTranscript(long lessonId, String text) {
+    }
+}
@@ -0,0 +1,136 @@
+package uz.edu.lms.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.edu.lms.datasource.ReadWriteRoutingDataSource;
+import uz.edu.lms.security.MediaUrlSigner;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of lesson read results, keyed by lesson, course or listing query
+ * and by a monotonic catalog version. Any write to lessons, modules or courses
+ * bumps the version once its transaction commits, so entries loaded before the
+ * write can never be returned afterwards, even if their load raced the commit.
+ * The version also yields the ETag, letting unchanged clients get a 304 without
+ * a database query or serialization. The version is per node and starts over on
+ * every restart, so the ETag also carries a random boot epoch: a tag issued by
+ * another node or an earlier run never matches, costing a full response rather
+ * than a stale 304. Writes on other nodes do not bump this node's version, so
+ * keys and the ETag also carry a time window of max-staleness: another node's
+ * write shows up here, and invalidates 304s, within that long. Until replicas may
+ * have caught up with the latest write, loads run on the primary so no stale
+ * result is cached under the new version.
+ */
+@Service
+public class LessonCache {
+
+    private final MediaUrlSigner mediaUrlSigner;
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final boolean enabled;
+    private final Cache<Key, Object> entries;
+    private final long maxStalenessMillis;
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long bumpedAt = System.nanoTime();
+
+    public LessonCache(MediaUrlSigner mediaUrlSigner,
+                       ReadWriteRoutingDataSource routingDataSource,
+                       @Value("${lessons.cache.enabled:true}") boolean enabled,
+                       @Value("${lessons.cache.max-entries:10000}") long maxEntries,
+                       @Value("${lessons.cache.max-staleness:PT30S}") Duration maxStaleness) {
+        this.mediaUrlSigner = mediaUrlSigner;
+        this.routingDataSource = routingDataSource;
+        this.enabled = enabled;
+        this.maxStalenessMillis = Math.max(maxStaleness.toMillis(), 1);
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                // Entries of past windows are unreachable; let them go
+                .expireAfterWrite(maxStaleness)
+                .recordStats()
+                .build();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * ETag of every lesson read at the current version. Responses carry signed media
+     * URLs, so the tag also changes with the signing window to make clients refetch
+     * before their URLs expire.
+     */
+    public String etag() {
+        return "\"lessons-" + epoch + "-" + version.get() + "-" + window() + "-" + mediaUrlSigner.renewalWindow() + "\"";
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String kind, Object argument, Supplier<T> loader) {
+        if (!enabled) {
+            return load(loader);
+        }
+        return (T) entries.get(new Key(version.get(), window(), kind, argument), key -> load(loader));
+    }
+
+    /**
+     * Moves the catalog to a new version once the current transaction commits, or
+     * immediately when there is none.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump();
+                }
+            });
+        } else {
+            bump();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = entries.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("version", version.get());
+        result.put("entries", entries.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("dataSource", routingDataSource.stats());
+        return result;
+    }
+
+    private <T> T load(Supplier<T> loader) {
+        if (System.nanoTime() - bumpedAt < routingDataSource.maxReplicaLag().toNanos()) {
+            return routingDataSource.onPrimary(loader);
+        }
+        return loader.get();
+    }
+
+    private long window() {
+        return System.currentTimeMillis() / maxStalenessMillis;
+    }
+
+    private void bump() {
+        bumpedAt = System.nanoTime();
+        version.incrementAndGet();
+        // Entries of older versions are unreachable now; drop them instead of waiting for eviction
+        entries.invalidateAll();
+    }
+
+    private record Key(long version, long window, String kind, Object argument) {
+    }
+}
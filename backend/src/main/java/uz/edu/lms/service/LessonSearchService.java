@@ -0,0 +1,351 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.util.HtmlUtils;
+import uz.edu.lms.dto.LessonSearchHit;
+import uz.edu.lms.dto.LessonSearchResult;
+import uz.edu.lms.entity.VideoLesson;
+import uz.edu.lms.repository.LessonView;
+import uz.edu.lms.repository.VideoLessonRepository;
+import uz.edu.lms.search.LessonSearchIndex;
+import uz.edu.lms.search.TextAnalyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over lesson titles, descriptions and transcripts. The index is
+ * kept in memory, updated after each lesson write commits, and saved to a snapshot
+ * file in the background. At startup the snapshot is loaded and reconciled with
+ * the database by comparing per-lesson versions, so only lessons that changed
+ * while the snapshot was stale are re-read; a periodic reconcile also catches
+ * lessons removed through course or module cascades.
+ */
+@Slf4j
+@Service
+public class LessonSearchService {
+
+    public static final int MAX_PAGE_SIZE = 50;
+    // Ranking deeper than this is not useful and would make the top-k heap large
+    private static final int MAX_RESULT_WINDOW = 1000;
+    private static final int REINDEX_BATCH = 500;
+    private static final int SNIPPET_LENGTH = 200;
+
+    private final VideoLessonRepository videoLessonRepository;
+    private final LessonTranscriptService lessonTranscriptService;
+    private final boolean enabled;
+    private final Path indexPath;
+    private final LessonSearchIndex index = new LessonSearchIndex();
+    private volatile boolean ready;
+
+    public LessonSearchService(VideoLessonRepository videoLessonRepository,
+                               LessonTranscriptService lessonTranscriptService,
+                               @Value("${lessons.search.enabled:true}") boolean enabled,
+                               @Value("${lessons.search.index-path:${file.upload-dir:uploads}/search/lessons.idx}") String indexPath) {
+        this.videoLessonRepository = videoLessonRepository;
+        this.lessonTranscriptService = lessonTranscriptService;
+        this.enabled = enabled;
+        this.indexPath = Paths.get(indexPath).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || !Files.exists(indexPath)) {
+            return;
+        }
+        try {
+            index.load(indexPath);
+            log.info("Lesson search index loaded: {} lessons", index.size());
+        } catch (IOException e) {
+            log.warn("Discarding unreadable lesson search index {}: {}", indexPath, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            reconcile();
+            ready = true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        save();
+    }
+
+    /**
+     * Indexes a created or updated lesson, with its current transcript, once the
+     * current transaction commits.
+     */
+    public void onLessonSaved(VideoLesson lesson, String transcript) {
+        if (enabled) {
+            // Read the fields after commit: updatedAt is only set when the entity is flushed
+            afterCommit(() -> index.put(lesson.getId(), version(lesson.getCreatedAt(), lesson.getUpdatedAt()),
+                    lesson.getTitle(), lesson.getDescription(), transcript));
+        }
+    }
+
+    public void onLessonDeleted(Long lessonId) {
+        if (enabled) {
+            afterCommit(() -> index.remove(lessonId));
+        }
+    }
+
+    public LessonSearchResult search(String query, int page, int size) {
+        if (!enabled) {
+            throw new IllegalStateException("Lesson search is disabled");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (page < 0 || (long) (page + 1) * size > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("page is beyond the first " + MAX_RESULT_WINDOW + " results");
+        }
+        List<String> queryTerms = TextAnalyzer.terms(query).stream().distinct().toList();
+        LessonSearchIndex.Result result = index.search(queryTerms, page * size, size);
+
+        List<Long> ids = result.hits().stream().map(LessonSearchIndex.Hit::lessonId).toList();
+        Map<Long, LessonView> views = ids.isEmpty() ? Map.of()
+                : videoLessonRepository.findViewsByIdIn(ids).stream()
+                        .collect(Collectors.toMap(LessonView::id, Function.identity()));
+        Map<Long, String> transcripts = ids.isEmpty() ? Map.of() : lessonTranscriptService.getTexts(ids);
+
+        Predicate<String> matches = matcher(queryTerms);
+        List<LessonSearchHit> items = new ArrayList<>(result.hits().size());
+        for (LessonSearchIndex.Hit hit : result.hits()) {
+            LessonView view = views.get(hit.lessonId());
+            if (view == null) {
+                // Deleted, or not visible yet to this read; onLessonDeleted or reconcile removes it
+                continue;
+            }
+            items.add(toHit(view, transcripts.get(hit.lessonId()), hit.score(), matches));
+        }
+        return LessonSearchResult.builder()
+                .query(query)
+                .page(page)
+                .size(size)
+                .total(result.total())
+                .items(items)
+                .build();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("ready", ready);
+        result.put("lessons", index.size());
+        result.put("indexPath", indexPath.toString());
+        return result;
+    }
+
+    /**
+     * Brings the index in line with the database: lessons whose version differs from
+     * the indexed one are re-read and indexed, and indexed lessons that no longer
+     * exist are removed.
+     */
+    @Scheduled(initialDelayString = "${lessons.search.reconcile-interval:PT10M}",
+            fixedDelayString = "${lessons.search.reconcile-interval:PT10M}")
+    public synchronized void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Map<Long, Long> indexed = index.versions();
+        List<Long> stale = new ArrayList<>();
+        Set<Long> present = new HashSet<>();
+        for (Object[] row : videoLessonRepository.findAllVersions()) {
+            Long id = (Long) row[0];
+            present.add(id);
+            Long indexedVersion = indexed.get(id);
+            if (indexedVersion == null || indexedVersion != version((LocalDateTime) row[1], (LocalDateTime) row[2])) {
+                stale.add(id);
+            }
+        }
+        int removed = 0;
+        for (Long id : indexed.keySet()) {
+            if (!present.contains(id)) {
+                index.remove(id);
+                removed++;
+            }
+        }
+        for (int from = 0; from < stale.size(); from += REINDEX_BATCH) {
+            List<Long> batch = stale.subList(from, Math.min(from + REINDEX_BATCH, stale.size()));
+            Map<Long, String> transcripts = lessonTranscriptService.getTexts(batch);
+            for (LessonView view : videoLessonRepository.findViewsByIdIn(batch)) {
+                index.put(view.id(), version(view.createdAt(), view.updatedAt()),
+                        view.title(), view.description(), transcripts.get(view.id()));
+            }
+        }
+        if (!stale.isEmpty() || removed > 0) {
+            log.info("Lesson search index reconciled in {} ms: {} reindexed, {} removed, {} lessons",
+                    System.currentTimeMillis() - started, stale.size(), removed, index.size());
+            save();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lessons.search.save-interval:PT30S}")
+    public void saveIfDirty() {
+        if (index.isDirty()) {
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            index.save(indexPath);
+        } catch (IOException e) {
+            log.error("Failed to save lesson search index {}", indexPath, e);
+        }
+    }
+
+    private LessonSearchHit toHit(LessonView view, String transcript, float score, Predicate<String> matches) {
+        Map<String, String> highlights = new LinkedHashMap<>();
+        putHighlight(highlights, "title", view.title(), matches, false);
+        putHighlight(highlights, "description", view.description(), matches, true);
+        putHighlight(highlights, "transcript", transcript, matches, true);
+        return LessonSearchHit.builder()
+                .id(view.id())
+                .title(view.title())
+                .description(view.description())
+                .thumbnailUrl(view.thumbnailUrl())
+                .duration(view.duration())
+                .moduleId(view.moduleId())
+                .moduleName(view.moduleName())
+                .courseId(view.courseId())
+                .courseName(view.courseName())
+                .score(score)
+                .highlights(highlights)
+                .build();
+    }
+
+    /**
+     * Adds the field with matched words marked, cut to the densest window of matches
+     * when {@code snippet} is set and the field is long.
+     */
+    private static void putHighlight(Map<String, String> highlights, String field, String text,
+                                     Predicate<String> matches, boolean snippet) {
+        if (text == null) {
+            return;
+        }
+        List<TextAnalyzer.Token> matched = TextAnalyzer.tokens(text).stream()
+                .filter(token -> matches.test(token.term()))
+                .toList();
+        if (matched.isEmpty()) {
+            return;
+        }
+        int from = 0;
+        int to = text.length();
+        if (snippet && text.length() > SNIPPET_LENGTH) {
+            int best = 0;
+            int bestCount = 0;
+            for (int i = 0, j = 0; i < matched.size(); i++) {
+                while (j < matched.size() && matched.get(j).end() - matched.get(i).start() <= SNIPPET_LENGTH) {
+                    j++;
+                }
+                if (j - i > bestCount) {
+                    bestCount = j - i;
+                    best = i;
+                }
+            }
+            // Center the window on the first match of the densest run, then widen to word boundaries
+            from = Math.max(0, matched.get(best).start() - SNIPPET_LENGTH / 4);
+            to = Math.min(text.length(), from + SNIPPET_LENGTH);
+            from = wordStart(text, from);
+            to = wordEnd(text, to);
+        }
+
+        StringBuilder html = new StringBuilder();
+        if (from > 0) {
+            html.append("…");
+        }
+        int position = from;
+        for (TextAnalyzer.Token token : matched) {
+            // A Cyrillic word can match with both of its terms; mark it once
+            if (token.start() < from || token.end() > to || token.start() < position) {
+                continue;
+            }
+            html.append(HtmlUtils.htmlEscape(text.substring(position, token.start()), "UTF-8"))
+                    .append("<mark>")
+                    .append(HtmlUtils.htmlEscape(text.substring(token.start(), token.end()), "UTF-8"))
+                    .append("</mark>");
+            position = token.end();
+        }
+        html.append(HtmlUtils.htmlEscape(text.substring(position, to), "UTF-8"));
+        if (to < text.length()) {
+            html.append("…");
+        }
+        highlights.put(field, html.toString());
+    }
+
+    /**
+     * Matches the analyzed query terms, and words starting with the last one, the same
+     * way the index expands a partially typed last word.
+     */
+    private static Predicate<String> matcher(List<String> queryTerms) {
+        Set<String> exact = new HashSet<>(queryTerms);
+        String last = queryTerms.isEmpty() ? null : queryTerms.get(queryTerms.size() - 1);
+        return term -> exact.contains(term) || (last != null && term.startsWith(last));
+    }
+
+    private static int wordStart(String text, int position) {
+        while (position > 0 && Character.isLetterOrDigit(text.charAt(position - 1))) {
+            position--;
+        }
+        return position;
+    }
+
+    private static int wordEnd(String text, int position) {
+        while (position < text.length() && Character.isLetterOrDigit(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static long version(LocalDateTime createdAt, LocalDateTime updatedAt) {
+        LocalDateTime changed = updatedAt != null ? updatedAt : createdAt;
+        if (changed == null) {
+            return 0;
+        }
+        // Milliseconds: the database rounds the sub-microsecond part away, which must not make every lesson stale
+        return changed.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
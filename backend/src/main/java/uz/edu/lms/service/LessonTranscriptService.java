@@ -0,0 +1,147 @@
+package uz.edu.lms.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uz.edu.lms.dto.TranscriptPage;
+import uz.edu.lms.entity.LessonTranscript;
+import uz.edu.lms.entity.VideoLesson;
+import uz.edu.lms.exception.ResourceNotFoundException;
+import uz.edu.lms.repository.LessonTranscriptRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores lesson transcripts compressed in their own table and serves them in pages,
+ * so lesson listings never read or ship transcript text. Decompressed texts are
+ * kept for paging, bounded by total length and keyed by the lesson catalog version,
+ * so any lesson write makes the old entries unreachable.
+ */
+@Service
+public class LessonTranscriptService {
+
+    public static final int MAX_PAGE_LENGTH = 100_000;
+
+    private final LessonTranscriptRepository lessonTranscriptRepository;
+    private final LessonCache lessonCache;
+    private final Cache<TextKey, String> texts;
+
+    public LessonTranscriptService(LessonTranscriptRepository lessonTranscriptRepository,
+                                   LessonCache lessonCache,
+                                   @Value("${lessons.transcripts.cache-max-chars:16777216}") long cacheMaxChars) {
+        this.lessonTranscriptRepository = lessonTranscriptRepository;
+        this.lessonCache = lessonCache;
+        this.texts = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxChars)
+                .weigher((TextKey key, String text) -> text.length())
+                .build();
+    }
+
+    /**
+     * Replaces the transcript of {@code lesson}. A null text leaves it unchanged and an
+     * empty one removes it.
+     */
+    @Transactional
+    public void save(VideoLesson lesson, String text) {
+        if (text == null) {
+            return;
+        }
+        if (text.isEmpty()) {
+            lessonTranscriptRepository.findById(lesson.getId()).ifPresent(lessonTranscriptRepository::delete);
+            return;
+        }
+        byte[] content = compress(text);
+        if (content.length > LessonTranscript.MAX_COMPRESSED_SIZE) {
+            throw new IllegalArgumentException("Transcript is too large");
+        }
+        LessonTranscript transcript = lessonTranscriptRepository.findById(lesson.getId())
+                .orElseGet(() -> LessonTranscript.builder().lesson(lesson).build());
+        transcript.setContent(content);
+        transcript.setLength(text.length());
+        lessonTranscriptRepository.save(transcript);
+    }
+
+    /**
+     * The full transcript text, or null when the lesson has none.
+     */
+    @Transactional(readOnly = true)
+    public String getText(Long lessonId) {
+        return lessonTranscriptRepository.findById(lessonId)
+                .map(transcript -> decompress(transcript.getContent()))
+                .orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public Map<Long, String> getTexts(Collection<Long> lessonIds) {
+        Map<Long, String> texts = new HashMap<>();
+        for (LessonTranscript transcript : lessonTranscriptRepository.findAllById(lessonIds)) {
+            texts.put(transcript.getLessonId(), decompress(transcript.getContent()));
+        }
+        return texts;
+    }
+
+    @Transactional(readOnly = true)
+    public TranscriptPage getPage(Long lessonId, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_LENGTH) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_LENGTH);
+        }
+        String text = texts.get(new TextKey(lessonCache.getVersion(), lessonId), key -> getText(lessonId));
+        if (text == null) {
+            throw new ResourceNotFoundException("Transcript", "lessonId", lessonId);
+        }
+        int from = Math.min(offset, text.length());
+        int to = Math.min(text.length(), from + limit);
+        // Do not split a surrogate pair across pages
+        if (to < text.length() && to > from && Character.isHighSurrogate(text.charAt(to - 1))) {
+            to--;
+        }
+        return TranscriptPage.builder()
+                .lessonId(lessonId)
+                .offset(from)
+                .length(text.length())
+                .text(text.substring(from, to))
+                .nextOffset(to < text.length() ? to : null)
+                .build();
+    }
+
+    static byte[] compress(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    static String decompress(byte[] content) {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(content))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record TextKey(long version, Long lessonId) {
+    }
+}
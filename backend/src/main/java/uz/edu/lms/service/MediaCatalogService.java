@@ -0,0 +1,307 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.storage.LocalStorageBackend;
+import uz.edu.lms.storage.MetadataStore;
+import uz.edu.lms.storage.StorageBackend;
+import uz.edu.lms.storage.StoredObject;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of uploaded videos, their metadata (from {@link MetadataStore})
+ * and attached PDFs. Built once at startup and kept current by explicit hooks from
+ * the upload and metadata code paths, plus a WatchService on the local folders (or
+ * a periodic rescan for remote storage), so listing videos never touches storage.
+ * The version counts rebuilds on this node only and starts over on restart.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaCatalogService {
+
+    private static final String VIDEOS = "videos";
+    private static final String PDFS = "pdfs";
+    private static final long WATCH_SETTLE_MILLIS = 250;
+
+    private final StorageBackend storageBackend;
+    private final MetadataStore metadataStore;
+
+    private final ConcurrentSkipListMap<String, VideoEntry> videos = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<String> pdfs = new ConcurrentSkipListSet<>();
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile List<Map<String, Object>> snapshot = List.of();
+
+    private WatchService watchService;
+
+    @PostConstruct
+    public void init() throws IOException {
+        rebuild();
+        if (storageBackend instanceof LocalStorageBackend local) {
+            startWatcher(local);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * ETag of the current listing. The random boot epoch keeps tags issued by other
+     * nodes or earlier runs, whose versions may coincide, from ever matching.
+     */
+    public String etag() {
+        return "\"catalog-" + epoch + "-" + version.get() + "\"";
+    }
+
+    public List<Map<String, Object>> listVideos() {
+        return snapshot;
+    }
+
+    public List<Map<String, Object>> listVideos(int page, int size) {
+        List<Map<String, Object>> current = snapshot;
+        int from = (int) Math.min((long) page * size, current.size());
+        int to = Math.min(from + size, current.size());
+        return current.subList(from, to);
+    }
+
+    public void onFileStored(String folder, String fileName) {
+        if (applyStored(folder, fileName)) {
+            publish();
+        }
+    }
+
+    public void onFileDeleted(String folder, String fileName) {
+        if (applyDeleted(folder, fileName)) {
+            publish();
+        }
+    }
+
+    public void onMetadataSaved(String videoId) {
+        // Re-read from the store: concurrent saves may return in a different order than they were committed
+        videos.computeIfPresent(videoId, (id, entry) -> entry.withMetadata(metadataStore.get(id)));
+        publish();
+    }
+
+    private boolean applyStored(String folder, String fileName) {
+        if (VIDEOS.equals(folder)) {
+            refreshVideo(fileName);
+        } else if (PDFS.equals(folder)) {
+            pdfs.add(fileName);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean applyDeleted(String folder, String fileName) {
+        if (VIDEOS.equals(folder)) {
+            videos.remove(stripExtension(fileName));
+        } else if (PDFS.equals(folder)) {
+            pdfs.remove(fileName);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void rebuild() {
+        Map<String, VideoEntry> scannedVideos = new HashMap<>();
+        Set<String> scannedPdfs = new HashSet<>();
+        try {
+            for (StoredObject object : storageBackend.list(VIDEOS + "/")) {
+                String videoId = stripExtension(object.name());
+                VideoEntry entry = new VideoEntry(object.name(), object.size(), null, null);
+                scannedVideos.put(videoId, entry.withMetadata(metadataStore.get(videoId)));
+            }
+            for (StoredObject object : storageBackend.list(PDFS + "/")) {
+                scannedPdfs.add(object.name());
+            }
+        } catch (IOException e) {
+            log.error("Failed to scan media storage", e);
+            return;
+        }
+
+        videos.keySet().retainAll(scannedVideos.keySet());
+        videos.putAll(scannedVideos);
+        pdfs.retainAll(scannedPdfs);
+        pdfs.addAll(scannedPdfs);
+        publish();
+        log.info("Media catalog built: {} videos, {} pdfs", videos.size(), pdfs.size());
+    }
+
+    /**
+     * Remote backends cannot be watched, so their listing is rescanned periodically.
+     */
+    @Scheduled(initialDelayString = "${file.catalog.refresh-interval:PT5M}",
+            fixedDelayString = "${file.catalog.refresh-interval:PT5M}")
+    public void refreshRemote() {
+        if (!(storageBackend instanceof LocalStorageBackend)) {
+            rebuild();
+        }
+    }
+
+    private void refreshVideo(String videoFileName) {
+        String videoId = stripExtension(videoFileName);
+        try {
+            Optional<StoredObject> video = storageBackend.stat(VIDEOS + "/" + videoFileName);
+            if (video.isEmpty()) {
+                videos.remove(videoId);
+                return;
+            }
+            VideoEntry entry = new VideoEntry(videoFileName, video.get().size(), null, null);
+            videos.put(videoId, entry.withMetadata(metadataStore.get(videoId)));
+        } catch (IOException e) {
+            log.warn("Failed to index video {}", videoFileName, e);
+        }
+    }
+
+    private synchronized void publish() {
+        List<Map<String, Object>> list = new ArrayList<>(videos.size());
+        for (Map.Entry<String, VideoEntry> e : videos.entrySet()) {
+            String videoId = e.getKey();
+            VideoEntry entry = e.getValue();
+
+            Map<String, Object> videoInfo = new HashMap<>();
+            videoInfo.put("id", videoId);
+            videoInfo.put("name", entry.fileName());
+            videoInfo.put("videoUrl", "/api/videos/stream/" + entry.fileName());
+            videoInfo.put("size", entry.size());
+            if (entry.title() != null || entry.description() != null) {
+                videoInfo.put("title", entry.title());
+                videoInfo.put("description", entry.description());
+            }
+
+            String pdfFileName = pdfs.ceiling(videoId);
+            if (pdfFileName != null && pdfFileName.startsWith(videoId)) {
+                videoInfo.put("pdfUrl", "/api/videos/pdf/" + pdfFileName);
+                videoInfo.put("pdfName", pdfFileName);
+            }
+            list.add(Collections.unmodifiableMap(videoInfo));
+        }
+        snapshot = Collections.unmodifiableList(list);
+        version.incrementAndGet();
+    }
+
+    private void startWatcher(LocalStorageBackend local) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Map<WatchKey, String> folders = new ConcurrentHashMap<>();
+        for (String folder : List.of(VIDEOS, PDFS)) {
+            Path folderPath = local.folderPath(folder);
+            Files.createDirectories(folderPath);
+            register(folderPath, folder, folders);
+            try (Stream<Path> shards = Files.list(folderPath)) {
+                for (Path shard : (Iterable<Path>) shards.filter(Files::isDirectory)::iterator) {
+                    register(shard, folder, folders);
+                }
+            }
+        }
+
+        Thread watchThread = new Thread(() -> watch(folders), "media-catalog-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void register(Path directory, String folder, Map<WatchKey, String> folders) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        folders.put(key, folder);
+    }
+
+    private void watch(Map<WatchKey, String> folders) {
+        while (true) {
+            try {
+                WatchKey key = watchService.take();
+                // Let a burst of events (e.g. a large file being written) settle before applying it
+                Thread.sleep(WATCH_SETTLE_MILLIS);
+                boolean changed = false;
+                do {
+                    changed |= applyEvents(folders.get(key), key, folders);
+                    if (!key.reset()) {
+                        folders.remove(key);
+                    }
+                    key = watchService.poll();
+                } while (key != null);
+                if (changed) {
+                    publish();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean applyEvents(String folder, WatchKey key, Map<WatchKey, String> folders) {
+        boolean changed = false;
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rebuild();
+                continue;
+            }
+            Path child = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                // A new shard directory; files may already have landed in it
+                try {
+                    register(child, folder, folders);
+                    try (Stream<Path> files = Files.list(child)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            changed |= applyStored(folder, file.getFileName().toString());
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to watch {}", child, e);
+                }
+                continue;
+            }
+            String fileName = child.getFileName().toString();
+            if (fileName.startsWith(".")) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed |= applyDeleted(folder, fileName);
+            } else {
+                changed |= applyStored(folder, fileName);
+            }
+        }
+        return changed;
+    }
+
+    private static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private record VideoEntry(String fileName, long size, Object title, Object description) {
+
+        VideoEntry withMetadata(Map<String, ?> metadata) {
+            if (metadata == null) {
+                return this;
+            }
+            return new VideoEntry(fileName, size, metadata.get("title"), metadata.get("description"));
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.entity.MediaJob;
+import uz.edu.lms.entity.VideoLesson;
+import uz.edu.lms.exception.ResourceNotFoundException;
+import uz.edu.lms.repository.MediaJobRepository;
+import uz.edu.lms.repository.VideoLessonRepository;
+import uz.edu.lms.storage.StorageBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Durable queue for media post-processing. Jobs live in the media_jobs table and
+ * are claimed with a conditional status update, run on a bounded worker pool and
+ * retried with exponential backoff. A claimed job is leased to this instance and the
+ * lease is renewed while it runs; a job whose lease runs out (its instance crashed)
+ * is queued again. Every stage is idempotent and completed stages are recorded, so
+ * an interrupted job simply resumes after them.
+ */
+@Slf4j
+@Service
+public class MediaJobService {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final MediaJobRepository mediaJobRepository;
+    private final VideoLessonRepository videoLessonRepository;
+    private final StorageBackend storageBackend;
+    private final BlobStoreService blobStoreService;
+    private final Mp4FaststartService mp4FaststartService;
+    private final LessonCache lessonCache;
+    private final ExecutorService workers;
+    private final Semaphore workerSlots;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${file.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${file.jobs.retry-backoff:PT30S}")
+    private Duration retryBackoff;
+
+    @Value("${file.jobs.lease:PT2M}")
+    private Duration lease;
+
+    public MediaJobService(MediaJobRepository mediaJobRepository,
+                           VideoLessonRepository videoLessonRepository,
+                           StorageBackend storageBackend,
+                           BlobStoreService blobStoreService,
+                           Mp4FaststartService mp4FaststartService,
+                           LessonCache lessonCache,
+                           @Value("${file.jobs.workers:2}") int workerCount) {
+        this.mediaJobRepository = mediaJobRepository;
+        this.videoLessonRepository = videoLessonRepository;
+        this.storageBackend = storageBackend;
+        this.blobStoreService = blobStoreService;
+        this.mp4FaststartService = mp4FaststartService;
+        this.lessonCache = lessonCache;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "media-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workerSlots = new Semaphore(workerCount);
+    }
+
+    @PostConstruct
+    public void init() {
+        requeueExpired();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdownNow();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+        // Hand our jobs back now rather than when their leases run out
+        try {
+            mediaJobRepository.transitionOwned(instanceId, MediaJob.Status.RUNNING, MediaJob.Status.PENDING,
+                    LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Could not release media job leases: {}", e.toString());
+        }
+    }
+
+    /**
+     * Renews the leases of jobs running here, and requeues jobs whose lease ran out
+     * because the instance running them stopped.
+     */
+    @Scheduled(fixedDelayString = "${file.jobs.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        mediaJobRepository.renewLeases(MediaJob.Status.RUNNING, instanceId, leaseEnd());
+        requeueExpired();
+    }
+
+    private void requeueExpired() {
+        // Completed stages are kept, so these resume where they stopped
+        int requeued = mediaJobRepository.transitionExpired(
+                MediaJob.Status.RUNNING, MediaJob.Status.PENDING, LocalDateTime.now());
+        if (requeued > 0) {
+            log.info("Requeued {} media jobs with expired leases", requeued);
+        }
+    }
+
+    private LocalDateTime leaseEnd() {
+        return LocalDateTime.now().plus(lease);
+    }
+
+    /**
+     * Queues post-processing for a stored file and returns the job, or empty if the
+     * file type needs none. A job already queued for the same content is reused.
+     */
+    public Optional<MediaJob> enqueue(String assetKey) {
+        if (!needsProcessing(assetKey)) {
+            return Optional.empty();
+        }
+        Optional<MediaJob> existing = findJob(assetKey);
+        if (existing.isPresent() && (existing.get().getStatus() == MediaJob.Status.PENDING
+                || existing.get().getStatus() == MediaJob.Status.RUNNING)) {
+            return existing;
+        }
+
+        MediaJob job = mediaJobRepository.save(MediaJob.builder().assetKey(assetKey).build());
+        log.info("Queued media job {} for {}", job.getId(), assetKey);
+        dispatch();
+        return Optional.of(job);
+    }
+
+    public MediaJob getJob(Long id) {
+        return mediaJobRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("MediaJob", "id", id));
+    }
+
+    public Optional<MediaJob> findJob(String assetKey) {
+        return mediaJobRepository.findFirstByAssetKeyOrderByIdDesc(assetKey);
+    }
+
+    /**
+     * Claims due jobs up to the number of idle workers. Also runs on a schedule to
+     * pick up retries and jobs queued by other instances.
+     */
+    @Scheduled(fixedDelayString = "${file.jobs.poll-interval:PT5S}")
+    public void dispatch() {
+        int idle = workerSlots.availablePermits();
+        if (idle == 0) {
+            return;
+        }
+        List<Long> dueIds = mediaJobRepository.findDueJobIds(
+                MediaJob.Status.PENDING, LocalDateTime.now(), PageRequest.of(0, idle));
+        for (Long id : dueIds) {
+            if (!workerSlots.tryAcquire()) {
+                return;
+            }
+            if (mediaJobRepository.claim(id, MediaJob.Status.PENDING, MediaJob.Status.RUNNING,
+                    instanceId, leaseEnd(), LocalDateTime.now()) == 0) {
+                workerSlots.release();
+                continue;
+            }
+            workers.execute(() -> {
+                try {
+                    run(id);
+                } finally {
+                    workerSlots.release();
+                }
+                dispatch();
+            });
+        }
+    }
+
+    private void run(Long id) {
+        MediaJob job = mediaJobRepository.findById(id).orElse(null);
+        if (job == null) {
+            return;
+        }
+        try {
+            for (MediaJob.Stage stage : stagesFor(job.getAssetKey())) {
+                if (job.isStageCompleted(stage)) {
+                    continue;
+                }
+                runStage(job, stage);
+                job.setCompletedStages(job.getCompletedStages().isEmpty()
+                        ? stage.name()
+                        : job.getCompletedStages() + "," + stage.name());
+                // Saving writes every column, so carry the lease forward rather than back
+                job.setLockedUntil(leaseEnd());
+                job = mediaJobRepository.save(job);
+            }
+            job.setStatus(MediaJob.Status.SUCCEEDED);
+            job.setLastError(null);
+            log.info("Media job {} for {} succeeded", job.getId(), job.getAssetKey());
+        } catch (Exception e) {
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLastError(e.toString());
+            if (job.getAttempts() >= maxAttempts) {
+                job.setStatus(MediaJob.Status.FAILED);
+                log.error("Media job {} for {} failed permanently", job.getId(), job.getAssetKey(), e);
+            } else {
+                long backoffMillis = retryBackoff.toMillis() << Math.min(job.getAttempts() - 1, 10);
+                job.setStatus(MediaJob.Status.PENDING);
+                job.setNextRunAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMillis)));
+                log.warn("Media job {} for {} failed (attempt {}), retrying in {} ms",
+                        job.getId(), job.getAssetKey(), job.getAttempts(), backoffMillis, e);
+            }
+        }
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        mediaJobRepository.save(job);
+    }
+
+    private void runStage(MediaJob job, MediaJob.Stage stage) throws IOException {
+        String key = job.getAssetKey();
+        if (!storageBackend.exists(key)) {
+            // Deleted before it was processed; nothing left to do
+            return;
+        }
+        switch (stage) {
+            case FASTSTART -> faststart(key);
+            case PROBE_DURATION -> probeDuration(job);
+            case PRECOMPRESS -> precompress(key);
+        }
+    }
+
+    private void faststart(String key) throws IOException {
+        Path workPath = Paths.get(uploadDir, ".partial").toAbsolutePath();
+        Files.createDirectories(workPath);
+        Path rewritten = workPath.resolve(UUID.randomUUID() + ".faststart");
+        Path downloaded = null;
+        try {
+            Path source = storageBackend.localPath(key).orElse(null);
+            if (source == null) {
+                downloaded = workPath.resolve(UUID.randomUUID() + ".download");
+                try (InputStream in = storageBackend.openStream(key)) {
+                    Files.copy(in, downloaded);
+                }
+                source = downloaded;
+            }
+            // The stored file is never modified in place: it may be streaming right now
+            if (mp4FaststartService.faststart(source, rewritten)) {
+                blobStoreService.replace(key, rewritten);
+            }
+        } finally {
+            Files.deleteIfExists(rewritten);
+            if (downloaded != null) {
+                Files.deleteIfExists(downloaded);
+            }
+        }
+    }
+
+    private void probeDuration(MediaJob job) {
+        Integer duration = mp4FaststartService.readDurationSeconds(job.getAssetKey());
+        job.setDuration(duration);
+        if (duration == null) {
+            return;
+        }
+        // Lessons may have been created while the upload was still processing
+        List<VideoLesson> lessons = videoLessonRepository.findByVideoUrlAndDurationIsNull(job.getAssetKey());
+        lessons.forEach(lesson -> lesson.setDuration(duration));
+        if (!lessons.isEmpty()) {
+            videoLessonRepository.saveAll(lessons);
+            lessonCache.invalidate();
+        }
+    }
+
+    /**
+     * Precompresses a file that is served as-is for clients accepting gzip. The variant
+     * is kept only when it saves at least 10%; PDFs with compressed streams rarely do.
+     */
+    private void precompress(String key) throws IOException {
+        String variantKey = BlobStoreService.gzipVariantKey(key);
+        if (storageBackend.exists(variantKey)) {
+            return;
+        }
+        Path workPath = Paths.get(uploadDir, ".partial").toAbsolutePath();
+        Files.createDirectories(workPath);
+        Path compressed = workPath.resolve(UUID.randomUUID() + ".gz");
+        try {
+            long originalSize;
+            try (InputStream in = storageBackend.openStream(key);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), GZIP_BUFFER_SIZE) {
+                     {
+                         def.setLevel(Deflater.BEST_COMPRESSION);
+                     }
+                 }) {
+                originalSize = in.transferTo(out);
+            }
+            long compressedSize = Files.size(compressed);
+            if (compressedSize * 10 >= originalSize * 9) {
+                log.info("Skipping gzip variant of {}: {} of {} bytes", key, compressedSize, originalSize);
+                return;
+            }
+            storageBackend.put(variantKey, compressed);
+            log.info("Stored gzip variant of {}: {} of {} bytes", key, compressedSize, originalSize);
+        } finally {
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+    /**
+     * Stages that apply to a stored file, in execution order.
+     */
+    public List<MediaJob.Stage> stagesFor(String assetKey) {
+        if (assetKey.startsWith("videos/") && Mp4FaststartService.isMp4(assetKey)) {
+            return List.of(MediaJob.Stage.FASTSTART, MediaJob.Stage.PROBE_DURATION);
+        }
+        if (assetKey.startsWith("pdfs/")) {
+            return List.of(MediaJob.Stage.PRECOMPRESS);
+        }
+        return List.of();
+    }
+
+    private boolean needsProcessing(String assetKey) {
+        return !stagesFor(assetKey).isEmpty();
+    }
+}
@@ -0,0 +1,279 @@
+package uz.edu.lms.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.storage.StorageBackend;
+import uz.edu.lms.storage.StoredObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Off-heap cache of fixed-size media segments used for range requests. Segments
+ * live in direct ByteBuffers keyed by object version and segment index, and the
+ * total size is bounded with W-TinyLFU eviction, so a crowd opening the same new
+ * lesson is served from memory even while the disk is busy with uploads.
+ * Concurrent misses on one segment are loaded once.
+ * <p>
+ * Off by default: it only pays off when one file is hot, and ranges larger than
+ * max-range bypass it so a full download does not flush it. Segments are reference
+ * counted; once evicted and no longer read, their buffer goes back to a small pool
+ * for the next load instead of waiting for the GC to free direct memory.
+ */
+@Slf4j
+@Service
+public class MediaSegmentCache {
+
+    private static final int MAX_POOLED_SEGMENTS = 32;
+
+    private final StorageBackend storageBackend;
+    private final boolean enabled;
+    private final int segmentSize;
+    private final long maxSize;
+    private final long maxRange;
+    private final Cache<SegmentKey, Segment> segments;
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int maxPooled;
+
+    public MediaSegmentCache(StorageBackend storageBackend,
+                             @Value("${file.segment-cache.enabled:false}") boolean enabled,
+                             @Value("${file.segment-cache.segment-size:1048576}") int segmentSize,
+                             @Value("${file.segment-cache.max-size:268435456}") long maxSize,
+                             @Value("${file.segment-cache.max-range:8388608}") long maxRange) {
+        this.storageBackend = storageBackend;
+        this.enabled = enabled && maxSize > 0;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.maxRange = maxRange;
+        this.maxPooled = (int) Math.min(MAX_POOLED_SEGMENTS, maxSize / segmentSize);
+        this.segments = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((SegmentKey key, Segment segment) -> segmentSize)
+                // Drops the cache's reference; the buffer is recycled once readers are done
+                .removalListener((SegmentKey key, Segment segment, RemovalCause cause) -> {
+                    if (segment != null) {
+                        segment.release();
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Whether a range of {@code count} bytes should be served through the cache.
+     */
+    public boolean caches(long count) {
+        return enabled && count <= maxRange;
+    }
+
+    /**
+     * Writes bytes [start, start + count) of {@code object} to {@code out}, loading
+     * any segment that is not cached yet.
+     */
+    public void write(StoredObject object, long start, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = start;
+        long end = start + count;
+        while (position < end) {
+            long index = position / segmentSize;
+            long segmentStart = index * segmentSize;
+            Segment segment = segment(object, index);
+            try {
+                ByteBuffer view = segment.buffer.duplicate();
+                view.limit((int) Math.min(view.limit(), end - segmentStart));
+                view.position((int) (position - segmentStart));
+                position += view.remaining();
+                while (view.hasRemaining()) {
+                    target.write(view);
+                }
+            } finally {
+                segment.release();
+            }
+        }
+    }
+
+    /**
+     * Returns a stream over bytes [start, start + count) of {@code object} that reads
+     * from cached segments, for callers that pull the body at their own pace.
+     */
+    public InputStream openRange(StoredObject object, long start, long count) {
+        return new InputStream() {
+            private long position = start;
+            private final long end = start + count;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (position >= end) {
+                    return -1;
+                }
+                long index = position / segmentSize;
+                Segment segment = segment(object, index);
+                try {
+                    ByteBuffer view = segment.buffer.duplicate();
+                    view.position((int) (position - index * segmentSize));
+                    int n = (int) Math.min(Math.min(length, view.remaining()), end - position);
+                    view.get(bytes, offset, n);
+                    position += n;
+                    return n;
+                } finally {
+                    segment.release();
+                }
+            }
+        };
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = segments.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("segmentSize", segmentSize);
+        result.put("maxSize", maxSize);
+        result.put("maxRange", maxRange);
+        result.put("size", segments.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        result.put("segments", segments.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictedBytes", stats.evictionWeight());
+        result.put("loadFailures", stats.loadFailureCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        result.put("pooledBuffers", pooled.get());
+        return result;
+    }
+
+    /**
+     * Returns the segment with a reference held for the caller, who must release it.
+     */
+    private Segment segment(StoredObject object, long index) throws IOException {
+        SegmentKey key = new SegmentKey(object.key(), object.size(), object.lastModified(), index);
+        while (true) {
+            Segment segment;
+            try {
+                segment = segments.get(key, k -> load(object, index));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            // Fails only if it was evicted and released in between; load it again
+            if (segment.retain()) {
+                return segment;
+            }
+        }
+    }
+
+    private Segment load(StoredObject object, long index) {
+        long offset = index * segmentSize;
+        int length = (int) Math.min(segmentSize, object.size() - offset);
+        if (length <= 0) {
+            throw new UncheckedIOException(new IOException("Segment " + index + " is past the end of " + object.key()));
+        }
+        ByteBuffer segment = allocate();
+        segment.limit(length);
+        try {
+            Optional<Path> file = storageBackend.localPath(object.key());
+            if (file.isPresent()) {
+                try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+                    while (segment.hasRemaining()) {
+                        if (channel.read(segment, offset + segment.position()) < 0) {
+                            throw new IOException("Unexpected end of " + object.key());
+                        }
+                    }
+                }
+            } else {
+                try (InputStream in = storageBackend.openRange(object.key(), offset, length);
+                     ReadableByteChannel channel = Channels.newChannel(in)) {
+                    while (segment.hasRemaining()) {
+                        if (channel.read(segment) < 0) {
+                            throw new IOException("Unexpected end of " + object.key());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            recycle(segment);
+            throw new UncheckedIOException(e);
+        }
+        segment.flip();
+        return new Segment(segment);
+    }
+
+    private ByteBuffer allocate() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(segmentSize);
+        }
+        pooled.decrementAndGet();
+        return buffer.clear();
+    }
+
+    private void recycle(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            pool.offer(buffer);
+        } else {
+            // Pool is full: leave this one to the GC
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * A cached segment. The cache holds one reference and every reader another; the
+     * buffer is recycled when the count drops to zero and never handed out after that.
+     */
+    private final class Segment {
+
+        private final ByteBuffer buffer;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                recycle(buffer);
+            }
+        }
+    }
+
+    // Size and modification time are part of the key, so rewritten files never hit stale segments
+    private record SegmentKey(String key, long size, long lastModified, long index) {
+    }
+}
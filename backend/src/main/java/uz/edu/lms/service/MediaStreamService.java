@@ -0,0 +1,407 @@
+package uz.edu.lms.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
+import uz.edu.lms.storage.StorageBackend;
+import uz.edu.lms.storage.StoredObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Serves stored media with HTTP range support (RFC 9110): single ranges,
+ * multipart/byteranges, If-Range, ETag/Last-Modified validation and 416.
+ * Local files are copied with FileChannel.transferTo, or handed to Tomcat's
+ * sendfile when the connector supports it, so they never pass through the heap;
+ * remote backends are streamed with ranged reads. Range requests are served from
+ * the in-memory segment cache when it is enabled, and bodies go through the
+ * egress scheduler when bandwidth limits are configured. In offload mode local
+ * files are handed to the reverse proxy with X-Accel-Redirect or X-Sendfile.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaStreamService {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final StorageBackend storageBackend;
+    private final MediaSegmentCache mediaSegmentCache;
+    private final EgressScheduler egressScheduler;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${media.offload.mode:none}")
+    private String offloadMode;
+
+    @Value("${media.offload.internal-prefix:/protected-media/}")
+    private String offloadPrefix;
+
+    /**
+     * Serves the object stored under {@code key}. Immutable objects (content that never
+     * changes under its name) are marked cacheable for a year and, for whole-file
+     * requests from clients that accept gzip, served from their precompressed variant.
+     */
+    public void serve(String key, MediaType contentType, String contentDisposition, boolean immutable,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<StoredObject> object = storageBackend.stat(key);
+        if (object.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String contentEncoding = null;
+        if (immutable) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+            // Ranges address the identity encoding, so only whole-file requests get the variant
+            if (request.getHeader(HttpHeaders.RANGE) == null && acceptsGzip(request)) {
+                Optional<StoredObject> variant = storageBackend.stat(BlobStoreService.gzipVariantKey(key));
+                if (variant.isPresent()) {
+                    object = variant;
+                    contentEncoding = "gzip";
+                }
+            }
+        }
+        key = object.get().key();
+
+        long length = object.get().size();
+        // HTTP dates have second precision, so compare against a truncated timestamp
+        long lastModified = object.get().lastModified() / 1000 * 1000;
+        String etag = buildETag(object.get(), immutable, contentEncoding);
+
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+        if (contentEncoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+        if (offload(key, contentType, response)) {
+            return;
+        }
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(length);
+            if (isHead(request)) {
+                return;
+            }
+            if (egressScheduler.isEnabled()) {
+                egressScheduler.stream(request, response, key, storageBackend.openRange(key, 0, length));
+            } else {
+                sendRegion(key, 0, length, request, response);
+            }
+            return;
+        }
+
+        List<long[]> ranges = resolveRanges(rangeHeader, length);
+        if (ranges.isEmpty()) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            if (isHead(request)) {
+                return;
+            }
+            if (egressScheduler.isEnabled()) {
+                egressScheduler.stream(request, response, key, openRange(object.get(), start, end - start + 1));
+            } else if (mediaSegmentCache.caches(end - start + 1)) {
+                mediaSegmentCache.write(object.get(), start, end - start + 1, response.getOutputStream());
+            } else {
+                sendRegion(key, start, end - start + 1, request, response);
+            }
+            return;
+        }
+
+        sendMultipart(object.get(), contentType, ranges, request, response);
+    }
+
+    private void sendMultipart(StoredObject object, MediaType contentType, List<long[]> ranges,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = object.key();
+        long length = object.size();
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + (range[1] - range[0] + 1);
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (isHead(request)) {
+            return;
+        }
+        if (egressScheduler.isEnabled()) {
+            egressScheduler.stream(request, response, key, new SequenceInputStream(new Enumeration<InputStream>() {
+                private int next;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return next <= ranges.size() * 2;
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    // Alternates part header, part body, and ends with the closing delimiter
+                    int index = next++;
+                    if (index == ranges.size() * 2) {
+                        return new ByteArrayInputStream(closing);
+                    }
+                    if (index % 2 == 0) {
+                        return new ByteArrayInputStream(partHeaders.get(index / 2));
+                    }
+                    long[] range = ranges.get(index / 2);
+                    try {
+                        return openRange(object, range[0], range[1] - range[0] + 1);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }));
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        Optional<Path> file = storageBackend.localPath(key);
+        if (ranges.stream().allMatch(range -> mediaSegmentCache.caches(range[1] - range[0] + 1))) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders.get(i));
+                mediaSegmentCache.write(object, range[0], range[1] - range[0] + 1, out);
+            }
+        } else if (file.isPresent()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    long[] range = ranges.get(i);
+                    out.write(partHeaders.get(i));
+                    transfer(channel, range[0], range[1] - range[0] + 1, target);
+                }
+            }
+        } else {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders.get(i));
+                try (InputStream in = storageBackend.openRange(key, range[0], range[1] - range[0] + 1)) {
+                    in.transferTo(out);
+                }
+            }
+        }
+        out.write(closing);
+        out.flush();
+    }
+
+    /**
+     * Lets a local reverse proxy send the file (ranges included) instead of the JVM.
+     * Returns false when offload is disabled or the object is not on local disk.
+     */
+    private boolean offload(String key, MediaType contentType, HttpServletResponse response) {
+        if ("none".equalsIgnoreCase(offloadMode)) {
+            return false;
+        }
+        Optional<Path> file = storageBackend.localPath(key);
+        if (file.isEmpty()) {
+            return false;
+        }
+        response.setContentType(contentType.toString());
+        if ("x-sendfile".equalsIgnoreCase(offloadMode)) {
+            response.setHeader("X-Sendfile", file.get().toAbsolutePath().toString());
+        } else {
+            Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+            String relative = root.relativize(file.get().toAbsolutePath().normalize()).toString().replace('\\', '/');
+            response.setHeader("X-Accel-Redirect",
+                    UriUtils.encodePath(offloadPrefix + relative, StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+
+    private InputStream openRange(StoredObject object, long start, long count) throws IOException {
+        return mediaSegmentCache.caches(count)
+                ? mediaSegmentCache.openRange(object, start, count)
+                : storageBackend.openRange(object.key(), start, count);
+    }
+
+    private void sendRegion(String key, long start, long count, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        Optional<Path> file = storageBackend.localPath(key);
+        if (file.isEmpty()) {
+            try (InputStream in = storageBackend.openRange(key, start, count)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // Tomcat writes the region with sendfile once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long written = channel.transferTo(position, end - position, target);
+            if (written <= 0) {
+                throw new IOException("Unexpected end of file while streaming at offset " + position);
+            }
+            position += written;
+        }
+    }
+
+    /**
+     * Resolves the Range header against the file length, dropping unsatisfiable
+     * ranges and coalescing overlapping or adjacent ones. An empty result means 416.
+     */
+    private List<long[]> resolveRanges(String rangeHeader, long length) {
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            log.debug("Invalid Range header '{}': {}", rangeHeader, e.getMessage());
+            return List.of();
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(length);
+            long end = httpRange.getRangeEnd(length);
+            if (length > 0 && start < length && start <= end) {
+                ranges.add(new long[]{start, end});
+            }
+        }
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] next = ranges.get(i);
+            if (next[0] <= current[1] + 1) {
+                current = new long[]{current[0], Math.max(current[1], next[1])};
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().replace(" ", "");
+                    if (parameter.equals("q=0") || parameter.matches("q=0\\.0*")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Content-addressed immutable objects use their hash as a strong validator that
+     * is stable across servers; everything else falls back to size and mtime.
+     */
+    private String buildETag(StoredObject object, boolean immutable, String contentEncoding) {
+        String hash = immutable ? BlobStoreService.hashOf(object.name()) : null;
+        String tag = hash != null
+                ? hash
+                : Long.toHexString(object.size()) + "-" + Long.toHexString(object.lastModified() / 1000 * 1000);
+        return "\"" + tag + (contentEncoding != null ? "-" + contentEncoding : "") + "\"";
+    }
+}
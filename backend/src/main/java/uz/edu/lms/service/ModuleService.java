@@ -16,6 +16,7 @@ public class ModuleService {
 
     private final ModuleRepository moduleRepository;
     private final CourseRepository courseRepository;
+    private final LessonCache lessonCache;
 
     public List<Module> getModulesByCourse(Long courseId) {
         Course course = courseRepository.findById(courseId)
@@ -32,7 +33,10 @@ public class ModuleService {
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
         module.setCourse(course);
-        return moduleRepository.save(module);
+        Module saved = moduleRepository.save(module);
+        // Course outlines list every module
+        lessonCache.invalidate();
+        return saved;
     }
 
     public Module updateModule(Long id, Module moduleDetails) {
@@ -40,10 +44,14 @@ public class ModuleService {
         module.setTitle(moduleDetails.getTitle());
         module.setDescription(moduleDetails.getDescription());
         module.setOrderNumber(moduleDetails.getOrderNumber());
-        return moduleRepository.save(module);
+        Module saved = moduleRepository.save(module);
+        // Lesson reads include the module title and order
+        lessonCache.invalidate();
+        return saved;
     }
 
     public void deleteModule(Long id) {
         moduleRepository.deleteById(id);
+        lessonCache.invalidate();
     }
 }
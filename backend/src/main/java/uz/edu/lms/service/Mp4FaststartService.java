@@ -0,0 +1,298 @@
+package uz.edu.lms.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.storage.StorageBackend;
+import uz.edu.lms.storage.StoredObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * ISO-BMFF (MP4/MOV) post-processing. Moves the moov box in front of mdat
+ * ("faststart") so players can start before the whole file has arrived, and
+ * reads the movie duration from mvhd. Only box headers and the moov box are
+ * read into memory; media data is copied channel to channel.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class Mp4FaststartService {
+
+    private static final Set<String> EXTENSIONS = Set.of(".mp4", ".m4v", ".mov");
+    // Boxes on the path moov/trak/mdia/minf/stbl that lead to the chunk offset tables
+    private static final Set<String> CONTAINERS = Set.of("trak", "mdia", "minf", "stbl");
+    private static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+    private static final long UINT32_MAX = 0xFFFFFFFFL;
+
+    private final StorageBackend storageBackend;
+
+    public static boolean isMp4(String fileName) {
+        if (fileName == null || !fileName.contains(".")) {
+            return false;
+        }
+        return EXTENSIONS.contains(fileName.substring(fileName.lastIndexOf('.')).toLowerCase());
+    }
+
+    /**
+     * Writes a copy of {@code source} with moov moved in front of the first mdat to
+     * {@code target}, shifting the stco/co64 chunk offsets accordingly. Returns false,
+     * without creating {@code target}, for files that are already faststart,
+     * fragmented or malformed.
+     */
+    public boolean faststart(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            List<Box> boxes = readBoxes(in);
+            Box moov = find(boxes, "moov");
+            Box mdat = find(boxes, "mdat");
+            if (moov == null || mdat == null || moov.offset() < mdat.offset() || find(boxes, "moof") != null) {
+                return false;
+            }
+            if (moov.size() > MAX_MOOV_SIZE) {
+                log.warn("Skipping faststart for {}: moov box is {} bytes", source, moov.size());
+                return false;
+            }
+
+            ByteBuffer moovData = ByteBuffer.allocate((int) moov.size());
+            readFully(in, moovData, moov.offset());
+            // Only the data between the first mdat and the old moov moves; anything after the old moov stays put
+            if (!shiftChunkOffsets(moovData, moov.headerSize(), (int) moov.size(),
+                    mdat.offset(), moov.offset(), moov.size())) {
+                log.warn("Skipping faststart for {}: chunk offsets cannot be relocated", source);
+                return false;
+            }
+
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (Box box : boxes) {
+                    if (box == moov) {
+                        continue;
+                    }
+                    if (box == mdat) {
+                        moovData.rewind();
+                        while (moovData.hasRemaining()) {
+                            out.write(moovData);
+                        }
+                    }
+                    transfer(in, box.offset(), box.size(), out);
+                }
+                out.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        log.info("Moved moov box to the front of {}", source);
+        return true;
+    }
+
+    /**
+     * Returns the movie duration in whole seconds from the mvhd box of a stored
+     * file, or null if the object is not a readable MP4.
+     */
+    public Integer readDurationSeconds(String key) {
+        try {
+            Optional<StoredObject> object = storageBackend.stat(key);
+            if (object.isEmpty() || !isMp4(object.get().name())) {
+                return null;
+            }
+            long length = object.get().size();
+            long offset = 0;
+            while (offset + 8 <= length) {
+                ByteBuffer header = ByteBuffer.wrap(readRange(key, offset, (int) Math.min(16, length - offset)));
+                Box box = parseHeader(header, 0, offset, length - offset);
+                if (box == null) {
+                    return null;
+                }
+                if ("moov".equals(box.type())) {
+                    if (box.size() > MAX_MOOV_SIZE) {
+                        return null;
+                    }
+                    ByteBuffer moov = ByteBuffer.wrap(readRange(key, offset, (int) box.size()));
+                    return parseDuration(moov, box.headerSize(), (int) box.size());
+                }
+                offset += box.size();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Failed to read duration of {}: {}", key, e.getMessage());
+        }
+        return null;
+    }
+
+    private Integer parseDuration(ByteBuffer moov, int start, int end) {
+        int position = start;
+        while (position + 8 <= end) {
+            Box box = parseHeader(moov, position, position, end - position);
+            if (box == null) {
+                return null;
+            }
+            if ("mvhd".equals(box.type())) {
+                int body = position + box.headerSize();
+                int boxEnd = position + (int) box.size();
+                // Version and flags, creation and modification times, timescale, duration:
+                // 4 + 8 + 8 + 4 + 8 bytes in version 1, 4 + 4 + 4 + 4 + 4 in version 0
+                if (body >= boxEnd || body + (moov.get(body) == 1 ? 32 : 20) > boxEnd) {
+                    return null;
+                }
+                long timescale;
+                long duration;
+                if (moov.get(body) == 1) {
+                    timescale = moov.getInt(body + 20) & UINT32_MAX;
+                    duration = moov.getLong(body + 24);
+                } else {
+                    timescale = moov.getInt(body + 12) & UINT32_MAX;
+                    duration = moov.getInt(body + 16) & UINT32_MAX;
+                    // All ones means "unknown" in version 0
+                    duration = duration == UINT32_MAX ? -1 : duration;
+                }
+                if (timescale == 0 || duration < 0) {
+                    return null;
+                }
+                return (int) Math.round((double) duration / timescale);
+            }
+            position += (int) box.size();
+        }
+        return null;
+    }
+
+    /**
+     * Adds {@code delta} to every stco/co64 entry below [start, end) of the moov buffer
+     * that points into the file range [from, to). Returns false if the structure is
+     * inconsistent or a 32-bit offset would overflow.
+     */
+    private boolean shiftChunkOffsets(ByteBuffer moov, int start, int end, long from, long to, long delta) {
+        int position = start;
+        while (position + 8 <= end) {
+            Box box = parseHeader(moov, position, position, end - position);
+            if (box == null) {
+                return false;
+            }
+            int body = position + box.headerSize();
+            int boxEnd = position + (int) box.size();
+            if (CONTAINERS.contains(box.type())) {
+                if (!shiftChunkOffsets(moov, body, boxEnd, from, to, delta)) {
+                    return false;
+                }
+            } else if ("stco".equals(box.type()) || "co64".equals(box.type())) {
+                boolean wide = "co64".equals(box.type());
+                long count = moov.getInt(body + 4) & UINT32_MAX;
+                int entrySize = wide ? 8 : 4;
+                if (body + 8 + count * entrySize > boxEnd) {
+                    return false;
+                }
+                for (int i = 0; i < count; i++) {
+                    int entry = body + 8 + i * entrySize;
+                    long offset = wide ? moov.getLong(entry) : moov.getInt(entry) & UINT32_MAX;
+                    if (offset < from || offset >= to) {
+                        continue;
+                    }
+                    if (wide) {
+                        moov.putLong(entry, offset + delta);
+                    } else {
+                        if (offset + delta > UINT32_MAX) {
+                            return false;
+                        }
+                        moov.putInt(entry, (int) (offset + delta));
+                    }
+                }
+            }
+            position = boxEnd;
+        }
+        return true;
+    }
+
+    private List<Box> readBoxes(FileChannel channel) throws IOException {
+        long length = channel.size();
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long offset = 0;
+        while (offset + 8 <= length) {
+            header.clear().limit((int) Math.min(16, length - offset));
+            readFully(channel, header, offset);
+            Box box = parseHeader(header, 0, offset, length - offset);
+            if (box == null) {
+                // Not ISO-BMFF, or truncated; report nothing so the file is left as is
+                return List.of();
+            }
+            boxes.add(box);
+            offset += box.size();
+        }
+        return boxes;
+    }
+
+    /**
+     * Parses the box header at {@code position} of {@code buffer}; {@code offset} is its
+     * position in the file and {@code remaining} the bytes left in the enclosing box.
+     */
+    private Box parseHeader(ByteBuffer buffer, int position, long offset, long remaining) {
+        if (buffer.limit() - position < 8) {
+            return null;
+        }
+        long size = buffer.getInt(position) & UINT32_MAX;
+        byte[] type = new byte[4];
+        buffer.get(position + 4, type);
+        int headerSize = 8;
+        if (size == 1) {
+            if (buffer.limit() - position < 16) {
+                return null;
+            }
+            size = buffer.getLong(position + 8);
+            headerSize = 16;
+        } else if (size == 0) {
+            size = remaining;
+        }
+        if (size < headerSize || size > remaining) {
+            return null;
+        }
+        return new Box(new String(type, StandardCharsets.ISO_8859_1), offset, size, headerSize);
+    }
+
+    private byte[] readRange(String key, long offset, int length) throws IOException {
+        try (InputStream in = storageBackend.openRange(key, offset, length)) {
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new IOException("Unexpected end of " + key + " at offset " + offset);
+            }
+            return bytes;
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at offset " + position);
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long written = in.transferTo(position, end - position, out);
+            if (written <= 0) {
+                throw new IOException("Unexpected end of file at offset " + position);
+            }
+            position += written;
+        }
+    }
+
+    private static Box find(List<Box> boxes, String type) {
+        return boxes.stream().filter(box -> box.type().equals(type)).findFirst().orElse(null);
+    }
+
+    private record Box(String type, long offset, long size, int headerSize) {
+    }
+}
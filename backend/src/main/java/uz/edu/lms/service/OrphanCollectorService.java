@@ -0,0 +1,496 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.edu.lms.entity.UploadOrigin;
+import uz.edu.lms.repository.UploadOriginRepository;
+import uz.edu.lms.repository.VideoLessonRepository;
+import uz.edu.lms.storage.StorageBackend;
+import uz.edu.lms.storage.StoredObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Garbage collector for uploaded files that no lesson references. Only files that were
+ * only ever uploaded for lessons are candidates (see {@link UploadOrigin}): the media
+ * library has no references of its own, so its uploads are never collected. Storage is
+ * walked in small batches (one shard prefix per batch) with a persisted cursor, and each
+ * file is checked against Bloom filters of candidates and of all lesson references, so
+ * memory stays bounded however large the tree is. A candidate that stays unreferenced
+ * for the grace period is confirmed against the database and moved to quarantine/; it
+ * is deleted, together with its blob, only after the quarantine period. A lesson that
+ * references a quarantined file restores it as soon as the lesson is saved.
+ */
+@Slf4j
+@Service
+public class OrphanCollectorService {
+
+    private static final String QUARANTINE = "quarantine";
+    private static final int SHARDS = 256;
+    // One batch per hex shard plus one for names that do not shard on their first two characters
+    private static final int BATCHES_PER_FOLDER = SHARDS + 1;
+    private static final int REFERENCE_PAGE_SIZE = 1000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final StorageBackend storageBackend;
+    private final BlobStoreService blobStoreService;
+    private final VideoLessonRepository videoLessonRepository;
+    private final UploadOriginRepository uploadOriginRepository;
+    private final MediaCatalogService mediaCatalogService;
+    private final QuotaService quotaService;
+    private final boolean enabled;
+    private final int batchesPerRun;
+    private final int maxSuspects;
+    private final Duration gracePeriod;
+    private final Duration quarantinePeriod;
+    private final Path cursorPath;
+
+    // First time each unreferenced candidate was seen; dropped once the file is referenced or quarantined.
+    // Capped at maxSuspects: candidates beyond it start their grace period on a later pass
+    private final Map<String, Long> suspects = new ConcurrentHashMap<>();
+    // Held from the final database check until a file is in quarantine, and while restoring one
+    private final Object quarantineLock = new Object();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong passes = new AtomicLong();
+    private volatile Instant lastPassCompletedAt;
+    private volatile int cursor;
+    private volatile BloomFilter references;
+    private volatile BloomFilter candidates;
+
+    public OrphanCollectorService(StorageBackend storageBackend,
+                                  BlobStoreService blobStoreService,
+                                  VideoLessonRepository videoLessonRepository,
+                                  UploadOriginRepository uploadOriginRepository,
+                                  MediaCatalogService mediaCatalogService,
+                                  QuotaService quotaService,
+                                  @Value("${file.gc.enabled:true}") boolean enabled,
+                                  @Value("${file.gc.batches-per-run:8}") int batchesPerRun,
+                                  @Value("${file.gc.max-suspects:100000}") int maxSuspects,
+                                  @Value("${file.gc.grace-period:PT24H}") Duration gracePeriod,
+                                  @Value("${file.gc.quarantine-period:P7D}") Duration quarantinePeriod,
+                                  @Value("${file.upload-dir:uploads}") String uploadDir) {
+        this.storageBackend = storageBackend;
+        this.blobStoreService = blobStoreService;
+        this.videoLessonRepository = videoLessonRepository;
+        this.uploadOriginRepository = uploadOriginRepository;
+        this.mediaCatalogService = mediaCatalogService;
+        this.quotaService = quotaService;
+        this.enabled = enabled;
+        this.batchesPerRun = batchesPerRun;
+        this.maxSuspects = maxSuspects;
+        this.gracePeriod = gracePeriod;
+        this.quarantinePeriod = quarantinePeriod;
+        this.cursorPath = Paths.get(uploadDir, ".gc-cursor").toAbsolutePath();
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            if (Files.exists(cursorPath)) {
+                cursor = Integer.parseInt(Files.readString(cursorPath, StandardCharsets.US_ASCII).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable GC cursor {}", cursorPath, e);
+        }
+    }
+
+    /**
+     * Processes the next few storage batches. A pass starts by purging expired
+     * quarantine entries and rebuilding the reference filter.
+     */
+    @Scheduled(initialDelayString = "${file.gc.interval:PT1M}", fixedDelayString = "${file.gc.interval:PT1M}")
+    public synchronized void collect() {
+        if (!enabled) {
+            return;
+        }
+        int totalBatches = BlobStoreService.MEDIA_FOLDERS.size() * BATCHES_PER_FOLDER;
+        try {
+            for (int i = 0; i < batchesPerRun; i++) {
+                if (cursor >= totalBatches) {
+                    cursor = 0;
+                }
+                if (cursor == 0) {
+                    purgeQuarantine();
+                }
+                if (cursor == 0 || references == null) {
+                    candidates = loadCandidates();
+                    references = loadReferences();
+                }
+                scanBatch(cursor);
+                cursor++;
+                if (cursor == totalBatches) {
+                    passes.incrementAndGet();
+                    lastPassCompletedAt = Instant.now();
+                    log.info("Orphan GC pass complete: {} quarantined, {} purged, {} bytes reclaimed so far",
+                            quarantined.get(), purged.get(), reclaimedBytes.get());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Orphan GC failed at batch {}", cursor, e);
+        }
+        saveCursor();
+    }
+
+    /**
+     * Records how {@code key} was uploaded. A new file uploaded for a lesson becomes a
+     * candidate; any other upload of the same content, and content that was already
+     * stored before the upload started, keeps it forever.
+     */
+    public void recordUpload(String key, boolean forLesson, long uploadStartedAt) {
+        Optional<UploadOrigin> origin = uploadOriginRepository.findByFileKey(key);
+        if (origin.isPresent()) {
+            if (!forLesson && origin.get().getLessonOnly()) {
+                uploadOriginRepository.pin(key);
+            }
+            return;
+        }
+        boolean lessonOnly = forLesson && !storedBefore(key, uploadStartedAt);
+        try {
+            uploadOriginRepository.save(UploadOrigin.builder().fileKey(key).lessonOnly(lessonOnly).build());
+        } catch (DataIntegrityViolationException e) {
+            // Recorded by a concurrent upload of the same content
+            if (!lessonOnly) {
+                uploadOriginRepository.pin(key);
+            }
+        }
+    }
+
+    /**
+     * Restores any of {@code keys} that are in quarantine, once the current transaction
+     * (the lesson save referencing them) commits.
+     */
+    public void onReferenced(Collection<String> keys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    restoreReferenced(keys);
+                }
+            });
+        } else {
+            restoreReferenced(keys);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("cursor", cursor);
+        result.put("batches", BlobStoreService.MEDIA_FOLDERS.size() * BATCHES_PER_FOLDER);
+        result.put("passes", passes.get());
+        result.put("lastPassCompletedAt", lastPassCompletedAt);
+        result.put("scanned", scanned.get());
+        result.put("suspects", suspects.size());
+        result.put("maxSuspects", maxSuspects);
+        result.put("quarantined", quarantined.get());
+        result.put("restored", restored.get());
+        result.put("purged", purged.get());
+        result.put("reclaimedBytes", reclaimedBytes.get());
+        BloomFilter current = references;
+        result.put("referenceFilterBits", current != null ? current.bitCount() : 0);
+        return result;
+    }
+
+    private void scanBatch(int batch) throws IOException {
+        String folder = BlobStoreService.MEDIA_FOLDERS.get(batch / BATCHES_PER_FOLDER);
+        int shard = batch % BATCHES_PER_FOLDER;
+        // The last batch lists the whole folder, but only legacy names that do not start with hex are kept
+        List<StoredObject> objects = shard < SHARDS
+                ? storageBackend.list(folder + "/" + String.format("%02x", shard))
+                : storageBackend.list(folder + "/");
+        long now = System.currentTimeMillis();
+        for (StoredObject object : objects) {
+            if (shard == SHARDS && startsWithHexShard(object.name())) {
+                continue;
+            }
+            scanned.incrementAndGet();
+            String key = object.key();
+            if (!candidates.mightContain(key) || references.mightContain(key)) {
+                suspects.remove(key);
+                continue;
+            }
+            Long firstSeen = suspects.get(key);
+            if (firstSeen == null) {
+                if (suspects.size() >= maxSuspects) {
+                    continue;
+                }
+                firstSeen = now;
+                suspects.put(key, now);
+            }
+            // Deduplicated uploads keep the blob's old mtime, so the grace period also runs from first sight
+            long graceMillis = gracePeriod.toMillis();
+            if (now - object.lastModified() < graceMillis || now - firstSeen < graceMillis) {
+                continue;
+            }
+            synchronized (quarantineLock) {
+                // The filters were built at the start of the pass; uploads and lessons since then are checked exactly
+                if (uploadOriginRepository.existsByFileKeyAndLessonOnlyTrue(key)
+                        && !videoLessonRepository.existsByVideoUrlOrPdfUrlOrThumbnailUrl(key, key, key)) {
+                    quarantine(object, now);
+                }
+            }
+            suspects.remove(key);
+        }
+    }
+
+    private void quarantine(StoredObject object, long now) throws IOException {
+        String[] parts = StorageBackend.splitKey(object.key());
+        String quarantineKey = QUARANTINE + "/" + now + "-" + parts[0] + "-" + parts[1];
+        storageBackend.link(object.key(), quarantineKey);
+        storageBackend.delete(object.key());
+        mediaCatalogService.onFileDeleted(parts[0], parts[1]);
+        quarantined.incrementAndGet();
+        log.info("Quarantined orphaned file {} ({} bytes)", object.key(), object.size());
+    }
+
+    private void purgeQuarantine() throws IOException {
+        long now = System.currentTimeMillis();
+        for (StoredObject entry : storageBackend.list(QUARANTINE + "/")) {
+            String[] parts = entry.name().split("-", 3);
+            long quarantinedAt;
+            try {
+                quarantinedAt = Long.parseLong(parts[0]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (parts.length < 3 || now - quarantinedAt < quarantinePeriod.toMillis()) {
+                continue;
+            }
+            String originalKey = parts[1] + "/" + parts[2];
+            synchronized (quarantineLock) {
+                if (!storageBackend.exists(entry.key())) {
+                    continue;
+                }
+                if (videoLessonRepository.existsByVideoUrlOrPdfUrlOrThumbnailUrl(originalKey, originalKey,
+                        originalKey)) {
+                    restore(entry, originalKey);
+                    continue;
+                }
+                storageBackend.delete(entry.key());
+            }
+            String sha256 = BlobStoreService.hashOf(parts[2]);
+            boolean freed = sha256 == null || blobStoreService.releaseBlob(sha256);
+            if (freed) {
+                storageBackend.delete(BlobStoreService.gzipVariantKey(originalKey));
+                reclaimedBytes.addAndGet(entry.size());
+            }
+            quotaService.recordDeleted(originalKey);
+            purged.incrementAndGet();
+            log.info("Deleted orphaned file {} after quarantine{}", originalKey,
+                    freed ? ", reclaimed " + entry.size() + " bytes" : "");
+        }
+    }
+
+    private void restore(StoredObject entry, String originalKey) throws IOException {
+        String sha256 = BlobStoreService.hashOf(StorageBackend.splitKey(originalKey)[1]);
+        if (sha256 != null) {
+            String blobKey = BlobStoreService.blobKey(blobStoreService.currentHash(sha256));
+            // The blob went with the last live entry: bring it back from the quarantined copy
+            if (!storageBackend.exists(blobKey)) {
+                storageBackend.link(entry.key(), blobKey);
+            }
+            if (!storageBackend.exists(originalKey)) {
+                storageBackend.reference(blobKey, originalKey);
+            }
+        } else if (!storageBackend.exists(originalKey)) {
+            storageBackend.link(entry.key(), originalKey);
+        }
+        storageBackend.delete(entry.key());
+        String[] parts = StorageBackend.splitKey(originalKey);
+        mediaCatalogService.onFileStored(parts[0], parts[1]);
+        restored.incrementAndGet();
+        log.info("Restored quarantined file {}: a lesson references it again", originalKey);
+    }
+
+    private void restoreReferenced(Collection<String> keys) {
+        try {
+            List<StoredObject> quarantine = null;
+            for (String key : keys) {
+                if (key == null || !isMediaKey(key) || storageBackend.exists(key)) {
+                    continue;
+                }
+                synchronized (quarantineLock) {
+                    if (quarantine == null) {
+                        quarantine = storageBackend.list(QUARANTINE + "/");
+                    }
+                    String[] parts = StorageBackend.splitKey(key);
+                    String suffix = "-" + parts[0] + "-" + parts[1];
+                    for (StoredObject entry : quarantine) {
+                        if (entry.name().endsWith(suffix) && storageBackend.exists(entry.key())) {
+                            restore(entry, key);
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to restore quarantined files {}", keys, e);
+        }
+    }
+
+    /**
+     * Whether the content behind {@code key} was already stored when the upload began:
+     * deduplicated uploads link to the existing blob, which keeps its old mtime.
+     */
+    private boolean storedBefore(String key, long uploadStartedAt) {
+        try {
+            String sha256 = BlobStoreService.hashOf(StorageBackend.splitKey(key)[1]);
+            String contentKey = sha256 != null ? BlobStoreService.blobKey(blobStoreService.currentHash(sha256)) : key;
+            return storageBackend.stat(contentKey)
+                    .map(object -> object.lastModified() < uploadStartedAt)
+                    .orElse(true);
+        } catch (IOException | IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static boolean isMediaKey(String key) {
+        int slash = key.indexOf('/');
+        return slash > 0 && BlobStoreService.MEDIA_FOLDERS.contains(key.substring(0, slash))
+                && key.indexOf('/', slash + 1) < 0;
+    }
+
+    /**
+     * Streams every file reference of every lesson into a Bloom filter sized for the
+     * current lesson count. False positives only keep an orphan for another pass.
+     */
+    private BloomFilter loadReferences() {
+        long expected = Math.max(1024, videoLessonRepository.count() * 3);
+        return loadFilter(expected, (afterId, page) -> videoLessonRepository.findFileReferences(afterId, page));
+    }
+
+    /**
+     * Keys of files only ever uploaded for lessons. A false positive is caught by the
+     * exact check before quarantining.
+     */
+    private BloomFilter loadCandidates() {
+        long expected = Math.max(1024, uploadOriginRepository.countByLessonOnlyTrue());
+        return loadFilter(expected, (afterId, page) -> uploadOriginRepository.findLessonOnlyKeys(afterId, page));
+    }
+
+    /**
+     * Pages through rows of an id followed by keys, adding every non-null key.
+     */
+    private static BloomFilter loadFilter(long expected, BiFunction<Long, PageRequest, List<Object[]>> pages) {
+        BloomFilter filter = new BloomFilter(expected, FALSE_POSITIVE_RATE);
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows = pages.apply(afterId, PageRequest.of(0, REFERENCE_PAGE_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                for (int i = 1; i < row.length; i++) {
+                    if (row[i] != null) {
+                        filter.add((String) row[i]);
+                    }
+                }
+            }
+            if (rows.size() < REFERENCE_PAGE_SIZE) {
+                return filter;
+            }
+        }
+    }
+
+    private void saveCursor() {
+        Path temp = cursorPath.resolveSibling(cursorPath.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(cursorPath.getParent());
+            Files.writeString(temp, Integer.toString(cursor), StandardCharsets.US_ASCII);
+            try {
+                Files.move(temp, cursorPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cursorPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to save GC cursor {}", cursorPath, e);
+        }
+    }
+
+    private static boolean startsWithHexShard(String name) {
+        return name.length() >= 2
+                && Character.digit(name.charAt(0), 16) >= 0 && !Character.isUpperCase(name.charAt(0))
+                && Character.digit(name.charAt(1), 16) >= 0 && !Character.isUpperCase(name.charAt(1));
+    }
+
+    private static final class BloomFilter {
+
+        private final long[] bits;
+        private final long size;
+        private final int hashes;
+
+        BloomFilter(long expected, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new long[(int) ((m + 63) / 64)];
+            this.size = bits.length * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) size / expected * Math.log(2)));
+        }
+
+        void add(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long bitCount() {
+            return size;
+        }
+
+        // FNV-1a over the UTF-8 bytes
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        // SplitMix64 finalizer, for a second independent hash
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
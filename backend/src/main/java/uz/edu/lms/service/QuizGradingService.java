@@ -0,0 +1,51 @@
+package uz.edu.lms.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.edu.lms.grading.AnswerKey;
+import uz.edu.lms.repository.QuestionRepository;
+
+/**
+ * Compiled answer keys by quiz. A quiz is compiled from one query on first use and
+ * kept until it is edited. Invalidating waits for a load in progress and then drops
+ * it, so a key read before the edit committed is never kept.
+ */
+@Service
+public class QuizGradingService {
+
+    private final QuestionRepository questionRepository;
+    private final Cache<Long, AnswerKey> keys;
+
+    public QuizGradingService(QuestionRepository questionRepository,
+                              @Value("${quizzes.answer-keys.max-entries:1000}") long maxEntries) {
+        this.questionRepository = questionRepository;
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    public AnswerKey getAnswerKey(Long quizId) {
+        return keys.get(quizId, id -> AnswerKey.compile(id, questionRepository.findWithOptionsByQuizId(id)));
+    }
+
+    /**
+     * Drops the quiz's key once the current transaction commits, or immediately when
+     * there is none.
+     */
+    public void invalidate(Long quizId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keys.invalidate(quizId);
+                }
+            });
+        } else {
+            keys.invalidate(quizId);
+        }
+    }
+}
@@ -2,8 +2,10 @@ package uz.edu.lms.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import uz.edu.lms.entity.*;
 import uz.edu.lms.exception.ResourceNotFoundException;
+import uz.edu.lms.grading.AnswerKey;
 import uz.edu.lms.repository.QuizAttemptRepository;
 import uz.edu.lms.repository.QuizRepository;
 import uz.edu.lms.repository.UserRepository;
@@ -18,6 +20,8 @@ public class QuizService {
     private final QuizRepository quizRepository;
     private final QuizAttemptRepository quizAttemptRepository;
     private final UserRepository userRepository;
+    private final LessonCache lessonCache;
+    private final QuizGradingService quizGradingService;
 
     public Quiz getQuizById(Long id) {
         return quizRepository.findById(id)
@@ -25,25 +29,29 @@ public class QuizService {
     }
 
     public Quiz createQuiz(Quiz quiz) {
-        return quizRepository.save(quiz);
+        Quiz saved = quizRepository.save(quiz);
+        // Course outlines summarize each module's quiz
+        lessonCache.invalidate();
+        quizGradingService.invalidate(saved.getId());
+        return saved;
     }
 
+    /**
+     * Grades the answers against the quiz's cached answer key, ignoring whatever
+     * {@code correct} the client sent, then saves the attempt and its answers in one
+     * transaction, so the answer inserts go out as a single JDBC batch.
+     */
+    @Transactional
     public QuizAttempt submitQuiz(Long quizId, Long studentId, List<Answer> answers) {
         Quiz quiz = getQuizById(quizId);
         User student = userRepository.findById(studentId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", studentId));
 
-        int totalScore = 0;
-        int maxScore = 0;
+        AnswerKey answerKey = quizGradingService.getAnswerKey(quizId);
+        int totalScore = answerKey.grade(answers);
+        int maxScore = answerKey.getMaxScore();
 
-        for (Answer answer : answers) {
-            maxScore += answer.getQuestion().getPoints();
-            if (answer.getCorrect()) {
-                totalScore += answer.getQuestion().getPoints();
-            }
-        }
-
-        double percentage = (totalScore * 100.0) / maxScore;
+        double percentage = maxScore > 0 ? (totalScore * 100.0) / maxScore : 0;
         boolean passed = percentage >= quiz.getPassingScore();
 
         QuizAttempt attempt = QuizAttempt.builder()
@@ -53,8 +61,10 @@ public class QuizService {
                 .score(totalScore)
                 .percentage(percentage)
                 .passed(passed)
+                .startedAt(LocalDateTime.now())
                 .completedAt(LocalDateTime.now())
                 .build();
+        answers.forEach(answer -> answer.setQuizAttempt(attempt));
 
         return quizAttemptRepository.save(attempt);
     }
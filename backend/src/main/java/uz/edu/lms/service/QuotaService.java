@@ -0,0 +1,312 @@
+package uz.edu.lms.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.entity.Course;
+import uz.edu.lms.entity.StorageUsage;
+import uz.edu.lms.entity.StoredFile;
+import uz.edu.lms.entity.User;
+import uz.edu.lms.exception.QuotaExceededException;
+import uz.edu.lms.exception.ResourceNotFoundException;
+import uz.edu.lms.repository.CourseRepository;
+import uz.edu.lms.repository.StorageUsageRepository;
+import uz.edu.lms.repository.StoredFileRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Storage usage per teacher and per course. Uploads and deletes update striped
+ * in-memory counters, which a scheduled task adds to the storage_usage table,
+ * so the upload path never contends on a counter row and a usage lookup is a
+ * single map access. Each flush writes only this instance's changes and reloads
+ * the totals, so instances sharing the database see each other's uploads. Identical content is charged once, to its first uploader.
+ * Uploads in progress hold a {@link Reservation}, so concurrent uploads cannot
+ * together exceed a quota that each of them fits on its own.
+ */
+@Slf4j
+@Service
+public class QuotaService {
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final CourseRepository courseRepository;
+    private final long teacherLimit;
+    private final long courseLimit;
+
+    private final Map<UsageKey, Usage> usages = new ConcurrentHashMap<>();
+    // Guards reserved byte counts, so checking and reserving is one step
+    private final Object reservationLock = new Object();
+
+    public QuotaService(StorageUsageRepository storageUsageRepository,
+                        StoredFileRepository storedFileRepository,
+                        CourseRepository courseRepository,
+                        @Value("${file.quota.teacher-limit:0}") long teacherLimit,
+                        @Value("${file.quota.course-limit:0}") long courseLimit) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.courseRepository = courseRepository;
+        this.teacherLimit = teacherLimit;
+        this.courseLimit = courseLimit;
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+        log.info("Storage usage loaded for {} teachers and courses", usages.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Resolves who an upload is charged to: the current user, or the course's teacher
+     * when the upload is made for a course.
+     */
+    public Owner resolveOwner(Long courseId) {
+        Long teacherId = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            teacherId = user.getId();
+        }
+        if (courseId != null) {
+            Course course = courseRepository.findById(courseId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Course", "id", courseId));
+            if (course.getTeacher() != null) {
+                teacherId = course.getTeacher().getId();
+            }
+        }
+        return new Owner(teacherId, courseId);
+    }
+
+    /**
+     * Rejects an upload of {@code incomingBytes} that would take the owner over a quota.
+     * Called before the body is read, using the declared length.
+     */
+    public void checkQuota(Owner owner, long incomingBytes) {
+        long incoming = Math.max(incomingBytes, 0);
+        check(StorageUsage.Scope.TEACHER, owner.teacherId(), teacherLimit, incoming);
+        check(StorageUsage.Scope.COURSE, owner.courseId(), courseLimit, incoming);
+    }
+
+    /**
+     * Reserves {@code declaredBytes} (nothing when unknown) for an upload about to be
+     * read. The upload grows the reservation with {@link Reservation#ensure} as bytes
+     * arrive and closes it once the file is stored or rejected.
+     */
+    public Reservation reserve(Owner owner, long declaredBytes) {
+        Reservation reservation = new Reservation(owner);
+        reservation.ensure(declaredBytes);
+        return reservation;
+    }
+
+    public void recordStored(String fileKey, long size, Owner owner) {
+        if (owner.isEmpty() || storedFileRepository.existsByFileKey(fileKey)) {
+            return;
+        }
+        try {
+            storedFileRepository.save(StoredFile.builder()
+                    .fileKey(fileKey)
+                    .size(size)
+                    .teacherId(owner.teacherId())
+                    .courseId(owner.courseId())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Charged to a concurrent upload of the same content
+            return;
+        }
+        add(owner.teacherId(), owner.courseId(), size, 1);
+    }
+
+    public void recordDeleted(String fileKey) {
+        storedFileRepository.findByFileKey(fileKey).ifPresent(file -> {
+            storedFileRepository.delete(file);
+            add(file.getTeacherId(), file.getCourseId(), -file.getSize(), -1);
+        });
+    }
+
+    public Map<String, Object> getUsage(StorageUsage.Scope scope, Long scopeId) {
+        Usage usage = usages.get(new UsageKey(scope, scopeId));
+        long limit = scope == StorageUsage.Scope.TEACHER ? teacherLimit : courseLimit;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scope", scope);
+        result.put("id", scopeId);
+        result.put("bytes", usage != null ? usage.bytes() : 0L);
+        result.put("files", usage != null ? usage.files() : 0L);
+        result.put("limit", limit > 0 ? limit : null);
+        return result;
+    }
+
+    /**
+     * Adds the changes made here since the last flush to the stored totals, then
+     * reloads the totals, which include other instances' changes.
+     */
+    @Scheduled(fixedDelayString = "${file.quota.flush-interval:PT10S}")
+    public synchronized void flush() {
+        Map<Usage, long[]> flushed = new HashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<UsageKey, Usage> entry : usages.entrySet()) {
+            Usage usage = entry.getValue();
+            long bytes = usage.pendingBytes.sum();
+            long files = usage.pendingFiles.sum();
+            if (bytes == 0 && files == 0) {
+                continue;
+            }
+            UsageKey key = entry.getKey();
+            if (storageUsageRepository.addUsage(key.scope(), key.scopeId(), bytes, files, now) == 0) {
+                try {
+                    storageUsageRepository.save(StorageUsage.builder()
+                            .scope(key.scope())
+                            .scopeId(key.scopeId())
+                            .bytes(bytes)
+                            .files(files)
+                            .build());
+                } catch (DataIntegrityViolationException e) {
+                    // Another instance created the row first
+                    storageUsageRepository.addUsage(key.scope(), key.scopeId(), bytes, files, now);
+                }
+            }
+            flushed.put(usage, new long[]{bytes, files});
+        }
+        reload();
+        // Taken out of the pending counts only now that the reloaded totals include them,
+        // so usage is briefly counted twice rather than not at all
+        flushed.forEach((usage, written) -> {
+            usage.pendingBytes.add(-written[0]);
+            usage.pendingFiles.add(-written[1]);
+        });
+        if (!flushed.isEmpty()) {
+            log.debug("Flushed storage usage of {} teachers and courses", flushed.size());
+        }
+    }
+
+    private void reload() {
+        for (StorageUsage row : storageUsageRepository.findAll()) {
+            Usage usage = usage(row.getScope(), row.getScopeId());
+            usage.storedBytes = row.getBytes();
+            usage.storedFiles = row.getFiles();
+        }
+    }
+
+    private void check(StorageUsage.Scope scope, Long scopeId, long limit, long incoming) {
+        if (scopeId == null || limit <= 0) {
+            return;
+        }
+        Usage usage = usages.get(new UsageKey(scope, scopeId));
+        long used = usage != null ? usage.bytes() + usage.reserved : 0;
+        if (used + incoming > limit) {
+            throw new QuotaExceededException(scope.name().toLowerCase() + " " + scopeId, limit, used, incoming);
+        }
+    }
+
+    private void adjustReserved(Owner owner, long bytes) {
+        synchronized (reservationLock) {
+            if (bytes > 0) {
+                checkQuota(owner, bytes);
+            }
+            if (owner.teacherId() != null) {
+                usage(StorageUsage.Scope.TEACHER, owner.teacherId()).reserved += bytes;
+            }
+            if (owner.courseId() != null) {
+                usage(StorageUsage.Scope.COURSE, owner.courseId()).reserved += bytes;
+            }
+        }
+    }
+
+    private void add(Long teacherId, Long courseId, long bytes, long files) {
+        if (teacherId != null) {
+            Usage usage = usage(StorageUsage.Scope.TEACHER, teacherId);
+            usage.pendingBytes.add(bytes);
+            usage.pendingFiles.add(files);
+        }
+        if (courseId != null) {
+            Usage usage = usage(StorageUsage.Scope.COURSE, courseId);
+            usage.pendingBytes.add(bytes);
+            usage.pendingFiles.add(files);
+        }
+    }
+
+    private Usage usage(StorageUsage.Scope scope, Long scopeId) {
+        return usages.computeIfAbsent(new UsageKey(scope, scopeId), key -> new Usage());
+    }
+
+    public record Owner(Long teacherId, Long courseId) {
+
+        boolean isEmpty() {
+            return teacherId == null && courseId == null;
+        }
+    }
+
+    /**
+     * Bytes held against an owner's quotas for one upload in progress. The stored
+     * file is charged by {@link #recordStored} before the reservation is closed, so
+     * for a moment both count, which can only reject, never admit, a concurrent upload.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final Owner owner;
+        private long bytes;
+        private boolean closed;
+
+        private Reservation(Owner owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Grows the reservation to {@code totalBytes} if it holds less.
+         *
+         * @throws QuotaExceededException if that takes the owner over a quota
+         */
+        public void ensure(long totalBytes) {
+            if (totalBytes <= bytes || closed || owner.isEmpty()) {
+                return;
+            }
+            adjustReserved(owner, totalBytes - bytes);
+            bytes = totalBytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                adjustReserved(owner, -bytes);
+            }
+        }
+    }
+
+    private record UsageKey(StorageUsage.Scope scope, Long scopeId) {
+    }
+
+    private static final class Usage {
+
+        // Totals last read from the database; only written by init and flush
+        private volatile long storedBytes;
+        private volatile long storedFiles;
+        // Changes made here that are not in the database yet
+        private final LongAdder pendingBytes = new LongAdder();
+        private final LongAdder pendingFiles = new LongAdder();
+        // Bytes held by uploads in progress; guarded by reservationLock
+        private volatile long reserved;
+
+        long bytes() {
+            return storedBytes + pendingBytes.sum();
+        }
+
+        long files() {
+            return storedFiles + pendingFiles.sum();
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package uz.edu.lms.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.exception.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Resumable (tus-style) uploads: a session is created up front, chunks are
+ * PATCHed in any order and in parallel and written at their offsets, and the
+ * completed file is moved atomically into the regular upload folders.
+ * Session state is kept next to the partial file so uploads survive restarts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumableUploadService {
+
+    private static final Set<String> FOLDERS = Set.of("videos", "pdfs");
+    private static final Map<String, String> CHECKSUM_ALGORITHMS = Map.of(
+            "md5", "MD5",
+            "sha1", "SHA-1",
+            "sha256", "SHA-256"
+    );
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileUploadService fileUploadService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${file.resumable.max-upload-size:536870912}")
+    private long maxUploadSize;
+
+    @Value("${file.resumable.expiry:PT24H}")
+    private Duration expiry;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    // Request threads are pooled, so each keeps one direct buffer for its chunks
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path partialPath = partialPath();
+        Files.createDirectories(partialPath);
+        try (Stream<Path> files = Files.list(partialPath)) {
+            files.filter(path -> path.getFileName().toString().endsWith(".json"))
+                    .forEach(this::loadSession);
+        }
+        log.info("Resumable uploads restored: {}", sessions.size());
+    }
+
+    public UploadSession create(String folder, String fileName, long length, QuotaService.Owner owner)
+            throws IOException {
+        if (!FOLDERS.contains(folder)) {
+            throw new IllegalArgumentException("Unsupported upload folder: " + folder);
+        }
+        if (length <= 0 || length > maxUploadSize) {
+            throw new IllegalArgumentException("Upload length must be between 1 and " + maxUploadSize + " bytes");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setFolder(folder);
+        session.setFileName(fileName);
+        session.setLength(length);
+        session.setTeacherId(owner.teacherId());
+        session.setCourseId(owner.courseId());
+        session.setCreatedAt(System.currentTimeMillis());
+
+        try (FileChannel channel = FileChannel.open(dataFile(session.getId()),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // Reserve the full length so positional writes never have to extend the file
+            channel.write(ByteBuffer.allocate(1), length - 1);
+        }
+        saveState(session);
+        sessions.put(session.getId(), session);
+        log.info("Resumable upload {} created for {} ({} bytes)", session.getId(), fileName, length);
+        return session;
+    }
+
+    public UploadSession getSession(String id) {
+        UploadSession session = sessions.get(id);
+        if (session == null) {
+            throw new ResourceNotFoundException("Upload", "id", id);
+        }
+        return session;
+    }
+
+    /**
+     * Writes one chunk at {@code offset} and returns the contiguous offset received so far.
+     * A chunk may not overlap bytes already received or being written by another PATCH,
+     * so a chunk only ever writes bytes nobody has confirmed. When a checksum header
+     * ("sha256 &lt;base64&gt;") is given, the chunk is only recorded as received if it
+     * matches; otherwise its bytes are left to be overwritten by a retry.
+     */
+    public long writeChunk(String id, long offset, long contentLength, String checksumHeader,
+                           InputStream body) throws IOException {
+        UploadSession session = getSession(id);
+        if (offset < 0 || offset >= session.getLength()) {
+            throw new IllegalArgumentException("Upload-Offset out of range: " + offset);
+        }
+        if (contentLength > session.getLength() - offset) {
+            throw new IllegalArgumentException("Chunk exceeds declared upload length");
+        }
+        if (contentLength == 0) {
+            return session.contiguousOffset();
+        }
+
+        MessageDigest digest = null;
+        byte[] expectedChecksum = null;
+        if (checksumHeader != null && !checksumHeader.isBlank()) {
+            String[] parts = checksumHeader.trim().split("\\s+", 2);
+            String algorithm = CHECKSUM_ALGORITHMS.get(parts[0].toLowerCase());
+            if (algorithm == null || parts.length != 2) {
+                throw new IllegalArgumentException("Unsupported Upload-Checksum: " + checksumHeader);
+            }
+            digest = newDigest(algorithm);
+            expectedChecksum = Base64.getDecoder().decode(parts[1]);
+        }
+
+        // Without a declared length the chunk may run up to the next claimed byte
+        long claimEnd;
+        synchronized (session) {
+            long free = session.freeUntil(offset);
+            claimEnd = contentLength >= 0 ? offset + contentLength : free;
+            if (free < 0 || claimEnd > free) {
+                throw new IllegalArgumentException("Chunk at offset " + offset
+                        + " overlaps bytes already received or in progress");
+            }
+            session.getWriting().add(new long[]{offset, claimEnd});
+        }
+
+        long written = 0;
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        try {
+            try (ReadableByteChannel in = Channels.newChannel(body);
+                 FileChannel channel = FileChannel.open(dataFile(id), StandardOpenOption.WRITE)) {
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    if (offset + written + buffer.remaining() > claimEnd) {
+                        throw new IllegalArgumentException(claimEnd == session.getLength()
+                                ? "Chunk exceeds declared upload length"
+                                : "Chunk at offset " + offset + " overlaps bytes already received or in progress");
+                    }
+                    if (digest != null) {
+                        digest.update(buffer.duplicate());
+                    }
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, offset + written);
+                    }
+                    buffer.clear();
+                }
+                // The range is recorded and acknowledged below; it must survive a crash from then on
+                if (written > 0) {
+                    channel.force(false);
+                }
+            }
+
+            if (digest != null && !MessageDigest.isEqual(digest.digest(), expectedChecksum)) {
+                throw new IllegalArgumentException("Chunk checksum mismatch at offset " + offset);
+            }
+            synchronized (session) {
+                if (written > 0) {
+                    session.addRange(offset, offset + written);
+                    saveState(session);
+                }
+            }
+        } finally {
+            buffer.clear();
+            synchronized (session) {
+                session.getWriting().removeIf(range -> range[0] == offset);
+            }
+        }
+        return session.contiguousOffset();
+    }
+
+    /**
+     * Moves a fully received upload into its target folder and returns the stored relative path.
+     */
+    public String complete(String id) throws IOException {
+        UploadSession session = getSession(id);
+        synchronized (session) {
+            if (!session.isComplete()) {
+                throw new IllegalArgumentException("Upload " + id + " is incomplete: "
+                        + session.receivedBytes() + " of " + session.getLength() + " bytes received");
+            }
+            try (FileChannel channel = FileChannel.open(dataFile(id), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            String filePath = fileUploadService.storeFile(dataFile(id), session.getFolder(), session.getFileName(),
+                    new QuotaService.Owner(session.getTeacherId(), session.getCourseId()));
+            sessions.remove(id);
+            Files.deleteIfExists(stateFile(id));
+            log.info("Resumable upload {} completed: {}", id, filePath);
+            return filePath;
+        }
+    }
+
+    public void abort(String id) throws IOException {
+        UploadSession session = sessions.remove(id);
+        if (session == null) {
+            throw new ResourceNotFoundException("Upload", "id", id);
+        }
+        Files.deleteIfExists(dataFile(id));
+        Files.deleteIfExists(stateFile(id));
+    }
+
+    @Scheduled(fixedDelayString = "${file.resumable.cleanup-interval:PT1H}")
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - expiry.toMillis();
+        for (UploadSession session : sessions.values()) {
+            if (session.getCreatedAt() < cutoff) {
+                try {
+                    abort(session.getId());
+                    log.info("Expired resumable upload {} removed", session.getId());
+                } catch (IOException | ResourceNotFoundException e) {
+                    log.warn("Failed to remove expired upload {}", session.getId(), e);
+                }
+            }
+        }
+    }
+
+    private void loadSession(Path stateFile) {
+        try {
+            UploadSession session = objectMapper.readValue(stateFile.toFile(), UploadSession.class);
+            if (Files.exists(dataFile(session.getId()))) {
+                sessions.put(session.getId(), session);
+            } else {
+                Files.deleteIfExists(stateFile);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to restore resumable upload {}", stateFile, e);
+        }
+    }
+
+    private void saveState(UploadSession session) throws IOException {
+        Path target = stateFile(session.getId());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), session);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path partialPath() {
+        return Paths.get(uploadDir, ".partial").toAbsolutePath();
+    }
+
+    private Path dataFile(String id) {
+        return partialPath().resolve(id + ".part");
+    }
+
+    private Path stateFile(String id) {
+        return partialPath().resolve(id + ".json");
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class UploadSession {
+        private String id;
+        private String folder;
+        private String fileName;
+        private long length;
+        private long createdAt;
+        // Who the upload is charged to once it completes
+        private Long teacherId;
+        private Long courseId;
+        // Received byte ranges as [start, end) pairs, kept sorted and merged
+        private List<long[]> ranges = new ArrayList<>();
+        // Ranges claimed by chunks still being written; not persisted
+        @JsonIgnore
+        private final List<long[]> writing = new ArrayList<>();
+
+        /**
+         * The end of the free gap starting at {@code offset}: the start of the next
+         * received or claimed range, or the upload length. -1 when {@code offset}
+         * itself is received or claimed.
+         */
+        long freeUntil(long offset) {
+            long end = length;
+            for (List<long[]> taken : List.of(ranges, writing)) {
+                for (long[] range : taken) {
+                    if (range[0] <= offset && offset < range[1]) {
+                        return -1;
+                    }
+                    if (range[0] > offset) {
+                        end = Math.min(end, range[0]);
+                    }
+                }
+            }
+            return end;
+        }
+
+        void addRange(long start, long end) {
+            List<long[]> merged = new ArrayList<>(ranges.size() + 1);
+            long[] incoming = {start, end};
+            boolean inserted = false;
+            for (long[] range : ranges) {
+                if (range[1] < incoming[0]) {
+                    merged.add(range);
+                } else if (incoming[1] < range[0]) {
+                    if (!inserted) {
+                        merged.add(incoming);
+                        inserted = true;
+                    }
+                    merged.add(range);
+                } else {
+                    incoming = new long[]{Math.min(range[0], incoming[0]), Math.max(range[1], incoming[1])};
+                }
+            }
+            if (!inserted) {
+                merged.add(incoming);
+            }
+            ranges = merged;
+        }
+
+        public long contiguousOffset() {
+            List<long[]> current = ranges;
+            return !current.isEmpty() && current.get(0)[0] == 0 ? current.get(0)[1] : 0;
+        }
+
+        public long receivedBytes() {
+            return ranges.stream().mapToLong(range -> range[1] - range[0]).sum();
+        }
+
+        @JsonIgnore
+        public boolean isComplete() {
+            return contiguousOffset() == length;
+        }
+    }
+}
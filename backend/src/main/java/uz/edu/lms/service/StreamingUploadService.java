@@ -0,0 +1,340 @@
+package uz.edu.lms.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import uz.edu.lms.exception.UploadCapacityExceededException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses multipart/form-data uploads straight from the request stream into
+ * the upload folder, so the servlet container never spools a temp copy.
+ * Size and SHA-256 are computed while the bytes pass through, and a bounded
+ * number of concurrent uploads turns disk saturation into backpressure.
+ */
+@Slf4j
+@Service
+public class StreamingUploadService {
+
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+
+    private final FileUploadService fileUploadService;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${file.streaming-upload.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.streaming-upload.buffer-size:262144}")
+    private int bufferSize;
+
+    @Value("${file.streaming-upload.max-size:524288000}")
+    private long maxSize;
+
+    @Value("${file.streaming-upload.acquire-timeout:PT10S}")
+    private Duration acquireTimeout;
+
+    private final Semaphore uploadSlots;
+
+    public StreamingUploadService(FileUploadService fileUploadService,
+                                  @Value("${file.streaming-upload.max-concurrent:4}") int maxConcurrent) {
+        this.fileUploadService = fileUploadService;
+        this.uploadSlots = new Semaphore(maxConcurrent, true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stores the {@code fieldName} file part, growing {@code reservation} as its bytes
+     * arrive so the owner's quota holds even when the request has no Content-Length.
+     */
+    public StoredUpload upload(HttpServletRequest request, String folder, String fieldName, QuotaService.Owner owner,
+                               QuotaService.Reservation reservation) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        String boundary = contentType.getParameter("boundary");
+        if (!MediaType.MULTIPART_FORM_DATA.includes(contentType) || boundary == null) {
+            throw new IllegalArgumentException("Expected multipart/form-data request with a boundary");
+        }
+        if (boundary.startsWith("\"") && boundary.endsWith("\"")) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+
+        if (!acquireSlot()) {
+            throw new UploadCapacityExceededException(acquireTimeout.toSeconds());
+        }
+        try {
+            MultipartReader reader = new MultipartReader(request.getInputStream(), boundary, bufferSize);
+            boolean hasPart = reader.skipPreamble();
+            while (hasPart) {
+                Map<String, String> headers = reader.readHeaders();
+                String disposition = headers.get(HttpHeaders.CONTENT_DISPOSITION.toLowerCase());
+                ContentDisposition contentDisposition = disposition != null
+                        ? ContentDisposition.parse(disposition)
+                        : ContentDisposition.empty();
+
+                if (fieldName.equals(contentDisposition.getName()) && contentDisposition.getFilename() != null) {
+                    StoredUpload stored = writePart(reader, folder, contentDisposition.getFilename(), owner,
+                            reservation);
+                    reader.drain();
+                    return stored;
+                }
+                hasPart = reader.copyPart(null);
+            }
+            throw new IllegalArgumentException("Multipart request has no '" + fieldName + "' file part");
+        } finally {
+            uploadSlots.release();
+        }
+    }
+
+    private StoredUpload writePart(MultipartReader reader, String folder, String originalFilename,
+                                   QuotaService.Owner owner, QuotaService.Reservation reservation)
+            throws IOException {
+        Path partialPath = Paths.get(uploadDir, ".partial").toAbsolutePath();
+        Files.createDirectories(partialPath);
+        Path target = partialPath.resolve(UUID.randomUUID() + ".upload");
+
+        MessageDigest digest = sha256();
+        ByteBuffer staging = ByteBuffer.allocateDirect(bufferSize);
+        long[] size = {0};
+        boolean stored = false;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            reader.copyPart((bytes, offset, length) -> {
+                size[0] += length;
+                if (size[0] > maxSize) {
+                    throw new IllegalArgumentException("File size exceeds maximum allowed size of " + maxSize + " bytes");
+                }
+                reservation.ensure(size[0]);
+                digest.update(bytes, offset, length);
+                int position = offset;
+                int end = offset + length;
+                while (position < end) {
+                    int count = Math.min(staging.remaining(), end - position);
+                    staging.put(bytes, position, count);
+                    position += count;
+                    if (!staging.hasRemaining()) {
+                        flush(staging, channel);
+                    }
+                }
+            });
+            flush(staging, channel);
+            channel.force(true);
+
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String filePath = fileUploadService.storeFile(target, folder, originalFilename, sha256, owner);
+            stored = true;
+            log.info("Streamed upload {} ({} bytes, sha256 {})", filePath, size[0], sha256);
+            return new StoredUpload(filePath, originalFilename, size[0], sha256);
+        } finally {
+            if (!stored) {
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    private void flush(ByteBuffer staging, FileChannel channel) throws IOException {
+        staging.flip();
+        while (staging.hasRemaining()) {
+            channel.write(staging);
+        }
+        staging.clear();
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return uploadSlots.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record StoredUpload(String filePath, String fileName, long size, String sha256) {
+    }
+
+    @FunctionalInterface
+    private interface PartSink {
+        void write(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Minimal forward-only multipart/form-data reader over a fixed-size buffer.
+     * Part bodies are handed to a sink as they arrive; only a delimiter's worth
+     * of bytes is ever held back.
+     */
+    private static final class MultipartReader {
+
+        private final InputStream in;
+        private final byte[] delimiter;
+        private final byte[] buffer;
+        private int head;
+        private int tail;
+        private boolean eof;
+        private boolean finished;
+
+        MultipartReader(InputStream in, String boundary, int bufferSize) {
+            this.in = in;
+            this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+            this.buffer = new byte[Math.max(bufferSize, delimiter.length * 4)];
+            // The first delimiter has no leading CRLF; pretend it does
+            this.buffer[0] = '\r';
+            this.buffer[1] = '\n';
+            this.tail = 2;
+        }
+
+        boolean skipPreamble() throws IOException {
+            return copyPart(null);
+        }
+
+        /**
+         * Copies the current part body to {@code sink} (or discards it) up to the next
+         * delimiter and returns whether another part follows.
+         */
+        boolean copyPart(PartSink sink) throws IOException {
+            while (true) {
+                int index = indexOf(delimiter, head, tail);
+                if (index >= 0) {
+                    if (sink != null && index > head) {
+                        sink.write(buffer, head, index - head);
+                    }
+                    head = index + delimiter.length;
+                    return readDelimiterSuffix();
+                }
+                int safeEnd = Math.max(head, tail - delimiter.length + 1);
+                if (sink != null && safeEnd > head) {
+                    sink.write(buffer, head, safeEnd - head);
+                }
+                head = safeEnd;
+                if (!fill()) {
+                    throw new IllegalArgumentException("Malformed multipart body: missing closing boundary");
+                }
+            }
+        }
+
+        Map<String, String> readHeaders() throws IOException {
+            byte[] terminator = {'\r', '\n', '\r', '\n'};
+            int index;
+            // A part without headers starts directly with the blank line
+            if (ensure(2) && buffer[head] == '\r' && buffer[head + 1] == '\n') {
+                head += 2;
+                return Map.of();
+            }
+            while ((index = indexOf(terminator, head, tail)) < 0) {
+                if (tail - head > MAX_HEADER_SIZE || !fill()) {
+                    throw new IllegalArgumentException("Malformed multipart part headers");
+                }
+            }
+            String block = new String(buffer, head, index - head, StandardCharsets.UTF_8);
+            head = index + terminator.length;
+
+            Map<String, String> headers = new HashMap<>();
+            for (String line : block.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+                }
+            }
+            return headers;
+        }
+
+        void drain() throws IOException {
+            while (!finished) {
+                readHeaders();
+                copyPart(null);
+            }
+        }
+
+        private boolean readDelimiterSuffix() throws IOException {
+            if (!ensure(2)) {
+                throw new IllegalArgumentException("Malformed multipart body: truncated boundary");
+            }
+            byte first = buffer[head];
+            byte second = buffer[head + 1];
+            head += 2;
+            if (first == '-' && second == '-') {
+                finished = true;
+                return false;
+            }
+            if (first == '\r' && second == '\n') {
+                return true;
+            }
+            throw new IllegalArgumentException("Malformed multipart body: invalid boundary");
+        }
+
+        private boolean ensure(int count) throws IOException {
+            while (tail - head < count) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            if (head > 0) {
+                System.arraycopy(buffer, head, buffer, 0, tail - head);
+                tail -= head;
+                head = 0;
+            }
+            int read = in.read(buffer, tail, buffer.length - tail);
+            if (read == -1) {
+                eof = true;
+                return false;
+            }
+            tail += read;
+            return true;
+        }
+
+        private int indexOf(byte[] pattern, int from, int to) {
+            int last = to - pattern.length;
+            outer:
+            for (int i = from; i <= last; i++) {
+                if (buffer[i] != pattern[0]) {
+                    continue;
+                }
+                for (int j = 1; j < pattern.length; j++) {
+                    if (buffer[i + j] != pattern[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -3,23 +3,68 @@ package uz.edu.lms.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import uz.edu.lms.datasource.ReplicaRead;
 import uz.edu.lms.dto.CreateLessonRequest;
+import uz.edu.lms.dto.CursorPage;
 import uz.edu.lms.dto.VideoLessonDTO;
+import uz.edu.lms.entity.Course;
 import uz.edu.lms.entity.Module;
 import uz.edu.lms.entity.VideoLesson;
 import uz.edu.lms.exception.ResourceNotFoundException;
+import uz.edu.lms.repository.LessonColumn;
+import uz.edu.lms.repository.LessonQuery;
+import uz.edu.lms.repository.LessonSort;
+import uz.edu.lms.repository.LessonView;
 import uz.edu.lms.repository.ModuleRepository;
 import uz.edu.lms.repository.VideoLessonRepository;
+import uz.edu.lms.security.MediaUrlSigner;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class VideoLessonService {
 
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Set<LessonColumn> ALL_COLUMNS = EnumSet.allOf(LessonColumn.class);
+    private static final Map<String, LessonColumn> FIELD_COLUMNS = Map.ofEntries(
+            Map.entry("id", LessonColumn.ID),
+            Map.entry("title", LessonColumn.TITLE),
+            Map.entry("description", LessonColumn.DESCRIPTION),
+            Map.entry("videoUrl", LessonColumn.VIDEO_URL),
+            Map.entry("signedVideoUrl", LessonColumn.VIDEO_URL),
+            Map.entry("thumbnailUrl", LessonColumn.THUMBNAIL_URL),
+            Map.entry("pdfUrl", LessonColumn.PDF_URL),
+            Map.entry("pdfFileName", LessonColumn.PDF_FILE_NAME),
+            Map.entry("signedPdfUrl", LessonColumn.PDF_URL),
+            Map.entry("duration", LessonColumn.DURATION),
+            Map.entry("moduleId", LessonColumn.MODULE_ID),
+            Map.entry("moduleName", LessonColumn.MODULE_NAME),
+            Map.entry("moduleOrder", LessonColumn.MODULE_ORDER),
+            Map.entry("courseId", LessonColumn.COURSE_ID),
+            Map.entry("courseName", LessonColumn.COURSE_NAME),
+            Map.entry("createdAt", LessonColumn.CREATED_AT),
+            Map.entry("updatedAt", LessonColumn.UPDATED_AT));
+
     private final VideoLessonRepository videoLessonRepository;
     private final ModuleRepository moduleRepository;
+    private final Mp4FaststartService mp4FaststartService;
+    private final MediaUrlSigner mediaUrlSigner;
+    private final LessonCache lessonCache;
+    private final LessonSearchService lessonSearchService;
+    private final LessonTranscriptService lessonTranscriptService;
+    private final OrphanCollectorService orphanCollectorService;
 
     @Transactional
     public VideoLessonDTO createLesson(CreateLessonRequest request) {
@@ -42,15 +87,18 @@ public class VideoLessonService {
                 .videoUrl(request.getVideoUrl())
                 .pdfUrl(request.getPdfUrl())
                 .pdfFileName(request.getPdfFileName())
-                .duration(request.getDuration())
+                .duration(request.getDuration() != null ? request.getDuration() : probeDuration(request.getVideoUrl()))
                 .thumbnailUrl(request.getThumbnailUrl())
-                .transcript(request.getTranscript())
                 .videoType(VideoLesson.VideoType.UPLOAD)
                 .module(module)
                 .build();
 
         VideoLesson saved = videoLessonRepository.save(videoLesson);
-        return toDTO(saved);
+        lessonTranscriptService.save(saved, request.getTranscript());
+        lessonCache.invalidate();
+        lessonSearchService.onLessonSaved(saved, request.getTranscript());
+        orphanCollectorService.onReferenced(fileReferences(saved));
+        return withSignedUrls(toDTO(toView(saved)));
     }
 
     @Transactional
@@ -65,6 +113,9 @@ public class VideoLessonService {
             videoLesson.setDescription(request.getDescription());
         }
         if (request.getVideoUrl() != null) {
+            if (!request.getVideoUrl().equals(videoLesson.getVideoUrl()) && request.getDuration() == null) {
+                videoLesson.setDuration(probeDuration(request.getVideoUrl()));
+            }
             videoLesson.setVideoUrl(request.getVideoUrl());
         }
         if (request.getPdfUrl() != null) {
@@ -79,35 +130,132 @@ public class VideoLessonService {
         if (request.getThumbnailUrl() != null) {
             videoLesson.setThumbnailUrl(request.getThumbnailUrl());
         }
-        if (request.getTranscript() != null) {
-            videoLesson.setTranscript(request.getTranscript());
+        String transcript = request.getTranscript();
+        if (transcript != null) {
+            lessonTranscriptService.save(videoLesson, transcript);
+            // The transcript lives in its own table, so the lesson row has to record the change
+            videoLesson.setUpdatedAt(LocalDateTime.now());
+        } else {
+            transcript = lessonTranscriptService.getText(id);
         }
 
         VideoLesson updated = videoLessonRepository.save(videoLesson);
-        return toDTO(updated);
+        lessonCache.invalidate();
+        lessonSearchService.onLessonSaved(updated, transcript);
+        orphanCollectorService.onReferenced(fileReferences(updated));
+        return withSignedUrls(toDTO(toView(updated)));
     }
 
+    @ReplicaRead
     @Transactional(readOnly = true)
     public VideoLessonDTO getLessonById(Long id) {
-        VideoLesson videoLesson = videoLessonRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("VideoLesson", "id", id));
-        return toDTO(videoLesson);
+        VideoLessonDTO lesson = lessonCache.get("lesson", id, () -> videoLessonRepository.findViewById(id)
+                .map(this::toDTO)
+                .orElseThrow(() -> new ResourceNotFoundException("VideoLesson", "id", id)));
+        return withSignedUrls(lesson);
     }
 
+    /**
+     * Lessons of a course in module order. {@code fields} limits the columns read, as
+     * returned by {@link #parseFields}; null reads all of them.
+     */
+    @ReplicaRead
     @Transactional(readOnly = true)
-    public List<VideoLessonDTO> getLessonsByCourseId(Long courseId) {
-        return videoLessonRepository.findByCourseIdOrderByModuleOrder(courseId)
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+    public List<VideoLessonDTO> getLessonsByCourseId(Long courseId, Set<String> fields) {
+        Set<LessonColumn> columns = columnsFor(fields);
+        List<VideoLessonDTO> lessons = lessonCache.get("course", new CourseQuery(courseId, columns), () ->
+                videoLessonRepository.findViews(new LessonQuery(LessonSort.MODULE_ORDER, courseId, null, null,
+                                null, null, 0), columns)
+                        .stream()
+                        .map(this::toDTO)
+                        .toList());
+        return lessons.stream().map(this::withSignedUrls).collect(Collectors.toList());
     }
 
+    /**
+     * Lists lessons one page at a time using keyset pagination: the cursor carries the
+     * sort key and id of the last lesson returned, and the next page starts strictly
+     * after it, so a deep page is an index range scan just like the first one.
+     * {@link LessonSort#MODULE_ORDER} only returns lessons attached to a module.
+     * {@code fields} limits the columns read, as in {@link #getLessonsByCourseId}.
+     */
+    @ReplicaRead
     @Transactional(readOnly = true)
-    public List<VideoLessonDTO> getAllLessons() {
-        return videoLessonRepository.findAll()
-                .stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+    public CursorPage<VideoLessonDTO> getLessons(LessonSort sort, String cursor, int limit,
+                                                 Long courseId, Long moduleId, Long teacherId, Set<String> fields) {
+        ListingQuery listing = new ListingQuery(sort, cursor, limit, courseId, moduleId, teacherId, columnsFor(fields));
+        CursorPage<VideoLessonDTO> page = lessonCache.get("listing", listing, () -> loadLessons(listing));
+        return CursorPage.<VideoLessonDTO>builder()
+                .items(page.getItems().stream().map(this::withSignedUrls).collect(Collectors.toList()))
+                .nextCursor(page.getNextCursor())
+                .build();
+    }
+
+    private CursorPage<VideoLessonDTO> loadLessons(ListingQuery listing) {
+        LessonSort sort = listing.sort();
+        int limit = listing.limit();
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        String cursor = listing.cursor();
+        LessonCursor after = cursor != null && !cursor.isBlank() ? LessonCursor.decode(cursor, sort) : null;
+        Comparable<?> afterKey = after == null ? null
+                : sort == LessonSort.CREATED_AT ? after.createdAt() : after.moduleOrder();
+
+        // One extra row tells whether there is a next page without a count query
+        List<LessonView> lessons = videoLessonRepository.findViews(new LessonQuery(sort, listing.courseId(),
+                listing.moduleId(), listing.teacherId(), afterKey, after != null ? after.id() : null, limit + 1),
+                listing.columns());
+        boolean hasMore = lessons.size() > limit;
+        List<LessonView> page = hasMore ? lessons.subList(0, limit) : lessons;
+
+        String nextCursor = null;
+        if (hasMore) {
+            LessonView last = page.get(page.size() - 1);
+            nextCursor = sort == LessonSort.CREATED_AT
+                    ? new LessonCursor(sort, last.createdAt(), null, last.id()).encode()
+                    : new LessonCursor(sort, null, last.moduleOrder(), last.id()).encode();
+        }
+        return CursorPage.<VideoLessonDTO>builder()
+                .items(page.stream().map(this::toDTO).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Resolves a {@code fields} parameter (comma-separated DTO property names) to the
+     * columns that have to be selected for it; null or blank selects every column.
+     */
+    public static Set<LessonColumn> columnsFor(Set<String> fields) {
+        if (fields == null) {
+            return ALL_COLUMNS;
+        }
+        Set<LessonColumn> columns = EnumSet.noneOf(LessonColumn.class);
+        for (String field : fields) {
+            LessonColumn column = FIELD_COLUMNS.get(field);
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown lesson field: " + field);
+            }
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    /**
+     * Splits a {@code fields} parameter into property names, or null when it is absent.
+     */
+    public static Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                names.add(field.trim());
+            }
+        }
+        columnsFor(names);
+        return names;
     }
 
     @Transactional
@@ -116,36 +264,110 @@ public class VideoLessonService {
             throw new ResourceNotFoundException("VideoLesson", "id", id);
         }
         videoLessonRepository.deleteById(id);
+        lessonCache.invalidate();
+        lessonSearchService.onLessonDeleted(id);
+    }
+
+    /**
+     * Reads the duration of an uploaded video so teachers don't have to enter it.
+     */
+    private Integer probeDuration(String videoUrl) {
+        return videoUrl != null && videoUrl.startsWith("videos/")
+                ? mp4FaststartService.readDurationSeconds(videoUrl)
+                : null;
     }
 
-    private VideoLessonDTO toDTO(VideoLesson videoLesson) {
+    /**
+     * Turns a stored file path (e.g. videos/abc.mp4) into a signed, expiring media URL.
+     */
+    private String signedUrl(String filePath, String folderPrefix, String route) {
+        if (filePath == null || !filePath.startsWith(folderPrefix)) {
+            return null;
+        }
+        return mediaUrlSigner.sign(route + filePath.substring(folderPrefix.length()));
+    }
+
+    private static LessonView toView(VideoLesson videoLesson) {
         Module module = videoLesson.getModule();
+        Course course = module != null ? module.getCourse() : null;
+        return new LessonView(videoLesson.getId(), videoLesson.getTitle(), videoLesson.getDescription(),
+                videoLesson.getVideoUrl(), videoLesson.getThumbnailUrl(), videoLesson.getPdfUrl(),
+                videoLesson.getPdfFileName(), videoLesson.getDuration(),
+                videoLesson.getCreatedAt(), videoLesson.getUpdatedAt(),
+                module != null ? module.getId() : null,
+                module != null ? module.getTitle() : null,
+                module != null ? module.getOrderNumber() : null,
+                course != null ? course.getId() : null,
+                course != null ? course.getTitle() : null);
+    }
 
+    private static List<String> fileReferences(VideoLesson lesson) {
+        return Arrays.asList(lesson.getVideoUrl(), lesson.getPdfUrl(), lesson.getThumbnailUrl());
+    }
+
+    /**
+     * Signed URLs are per user and expire, so they are added to a copy of the cached DTO.
+     */
+    private VideoLessonDTO withSignedUrls(VideoLessonDTO lesson) {
+        return lesson.toBuilder()
+                .signedVideoUrl(signedUrl(lesson.getVideoUrl(), "videos/", "/api/videos/stream/"))
+                .signedPdfUrl(signedUrl(lesson.getPdfUrl(), "pdfs/", "/api/videos/pdf/"))
+                .build();
+    }
+
+    private VideoLessonDTO toDTO(LessonView lesson) {
         VideoLessonDTO.VideoLessonDTOBuilder builder = VideoLessonDTO.builder()
-                .id(videoLesson.getId())
-                .title(videoLesson.getTitle())
-                .description(videoLesson.getDescription())
-                .videoUrl(videoLesson.getVideoUrl())
-                .pdfUrl(videoLesson.getPdfUrl())
-                .pdfFileName(videoLesson.getPdfFileName())
-                .duration(videoLesson.getDuration())
-                .thumbnailUrl(videoLesson.getThumbnailUrl())
-                .transcript(videoLesson.getTranscript())
-                .createdAt(videoLesson.getCreatedAt())
-                .updatedAt(videoLesson.getUpdatedAt());
-
-        // Add module info only if module exists
-        if (module != null) {
-            builder.moduleId(module.getId())
-                   .moduleName(module.getTitle())
-                   .moduleOrder(module.getOrderNumber())
-                   .courseId(module.getCourse().getId())
-                   .courseName(module.getCourse().getTitle());
-        } else {
-            builder.moduleName("General")
-                   .courseName("Learning Theory");
-        }
+                .id(lesson.id())
+                .title(lesson.title())
+                .description(lesson.description())
+                .videoUrl(lesson.videoUrl())
+                .pdfUrl(lesson.pdfUrl())
+                .pdfFileName(lesson.pdfFileName())
+                .duration(lesson.duration())
+                .thumbnailUrl(lesson.thumbnailUrl())
+                .createdAt(lesson.createdAt())
+                .updatedAt(lesson.updatedAt())
+                .moduleId(lesson.moduleId())
+                .moduleOrder(lesson.moduleOrder())
+                .courseId(lesson.courseId())
+                // Lessons without a module; decided per column, as a sparse view may leave moduleId unread
+                .moduleName(lesson.moduleName() != null ? lesson.moduleName() : "General")
+                .courseName(lesson.courseName() != null ? lesson.courseName() : "Learning Theory");
 
         return builder.build();
     }
+
+    private record ListingQuery(LessonSort sort, String cursor, int limit,
+                                Long courseId, Long moduleId, Long teacherId, Set<LessonColumn> columns) {
+    }
+
+    private record CourseQuery(Long courseId, Set<LessonColumn> columns) {
+    }
+
+    /**
+     * Position after the last lesson of a page, serialized as an opaque URL-safe token.
+     */
+    private record LessonCursor(LessonSort sort, LocalDateTime createdAt, Integer moduleOrder, Long id) {
+
+        String encode() {
+            String key = sort == LessonSort.CREATED_AT ? createdAt.toString() : moduleOrder.toString();
+            String raw = sort.ordinal() + "|" + key + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static LessonCursor decode(String token, LessonSort expectedSort) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3 || Integer.parseInt(parts[0]) != expectedSort.ordinal()) {
+                    throw new IllegalArgumentException("Cursor was issued for a different sort order");
+                }
+                Long id = Long.valueOf(parts[2]);
+                return expectedSort == LessonSort.CREATED_AT
+                        ? new LessonCursor(expectedSort, LocalDateTime.parse(parts[1]), null, id)
+                        : new LessonCursor(expectedSort, null, Integer.valueOf(parts[1]), id);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + e.getMessage(), e);
+            }
+        }
+    }
 }
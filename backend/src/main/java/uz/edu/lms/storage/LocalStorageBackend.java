@@ -0,0 +1,211 @@
+package uz.edu.lms.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Stores objects on the local filesystem under {@code file.upload-dir}, spread over
+ * 256 shard directories per folder (folder/ab/name) so no directory grows unbounded.
+ * Names that start with two hex digits (content hashes, UUIDs) shard on those digits,
+ * anything else on the MD5 of the name. Files from the old flat layout are still found.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        Path path = resolve(key);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            return Optional.of(new StoredObject(key, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) throws IOException {
+        Path temp = Paths.get(uploadDir, ".partial").toAbsolutePath().resolve(UUID.randomUUID() + ".tmp");
+        Files.createDirectories(temp.getParent());
+        try {
+            Files.copy(content, temp);
+            put(key, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void link(String sourceKey, String targetKey) throws IOException {
+        Path source = resolve(sourceKey);
+        Path target = shardedPath(targetKey);
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        // Link under a hidden name first, then rename over the target
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".link");
+        try {
+            Files.createLink(temp, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.createSymbolicLink(temp, source);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        boolean deleted = Files.deleteIfExists(shardedPath(key));
+        return Files.deleteIfExists(legacyPath(key)) || deleted;
+    }
+
+    @Override
+    public List<StoredObject> list(String prefix) throws IOException {
+        int slash = prefix.indexOf('/');
+        String folder = slash >= 0 ? prefix.substring(0, slash) : prefix;
+        String namePrefix = slash >= 0 ? prefix.substring(slash + 1) : "";
+        Path folderPath = folderPath(folder);
+        if (!Files.isDirectory(folderPath)) {
+            return List.of();
+        }
+
+        List<Path> directories = new ArrayList<>();
+        directories.add(folderPath);
+        if (namePrefix.length() >= 2 && isHexShard(namePrefix)) {
+            directories.add(folderPath.resolve(namePrefix.substring(0, 2)));
+        } else {
+            try (Stream<Path> children = Files.list(folderPath)) {
+                children.filter(Files::isDirectory).forEach(directories::add);
+            }
+        }
+
+        List<StoredObject> objects = new ArrayList<>();
+        for (Path directory : directories) {
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(".") || !name.startsWith(namePrefix)) {
+                        continue;
+                    }
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attributes.isRegularFile()) {
+                            objects.add(new StoredObject(folder + "/" + name, attributes.size(),
+                                    attributes.lastModifiedTime().toMillis()));
+                        }
+                    } catch (NoSuchFileException e) {
+                        // Deleted while listing
+                    }
+                }
+            }
+        }
+        return objects;
+    }
+
+    public Path folderPath(String folder) {
+        return Paths.get(uploadDir, folder).toAbsolutePath();
+    }
+
+    /**
+     * Resolves a key to its sharded location, or to the old flat location if only that exists.
+     */
+    public Path resolve(String key) {
+        Path sharded = shardedPath(key);
+        if (Files.exists(sharded, LinkOption.NOFOLLOW_LINKS)) {
+            return sharded;
+        }
+        Path legacy = legacyPath(key);
+        return Files.exists(legacy, LinkOption.NOFOLLOW_LINKS) ? legacy : sharded;
+    }
+
+    private Path shardedPath(String key) {
+        String[] parts = StorageBackend.splitKey(key);
+        return folderPath(parts[0]).resolve(shardOf(parts[1])).resolve(parts[1]);
+    }
+
+    private Path legacyPath(String key) {
+        String[] parts = StorageBackend.splitKey(key);
+        return folderPath(parts[0]).resolve(parts[1]);
+    }
+
+    static String shardOf(String name) {
+        if (name.length() >= 2 && isHexShard(name)) {
+            return name.substring(0, 2);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(name.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().toHexDigits(hash[0]);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isHexShard(String name) {
+        return Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0
+                && !Character.isUpperCase(name.charAt(0)) && !Character.isUpperCase(name.charAt(1));
+    }
+}
@@ -0,0 +1,411 @@
+package uz.edu.lms.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded store for video metadata: an append-only log of checksummed records
+ * with the live values indexed in memory. Writes are group-committed by a single
+ * writer thread, so concurrent saves share one fsync, and a save returns only once
+ * its record is on disk. On startup the log is replayed up to the first torn or
+ * corrupt record and truncated there; it is compacted once most of it is garbage.
+ *
+ * <p>Record layout: {@code int payloadLength, int crc32c(payload), payload}, where
+ * the payload is {@code byte op, short keyLength, key, value} and the value is the
+ * metadata as JSON (empty for deletes).
+ */
+@Slf4j
+@Component
+public class MetadataStore {
+
+    private static final byte[] MAGIC = "LMSMETA1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private static final int MAX_BATCH = 256;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    private static final String SIDECAR_FOLDER = "metadata";
+    private static final PendingWrite SHUTDOWN = new PendingWrite(null, null, null, null);
+    private static final TypeReference<Map<String, String>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final StorageBackend storageBackend;
+    private final Path logPath;
+    private final long compactMinSize;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final Object logLock = new Object();
+    private FileChannel channel;
+    private Thread writer;
+
+    public MetadataStore(ObjectMapper objectMapper,
+                         StorageBackend storageBackend,
+                         @Value("${file.metadata-store.path:${file.upload-dir:uploads}/video-metadata.log}") String path,
+                         @Value("${file.metadata-store.compact-min-size:1048576}") long compactMinSize) {
+        this.objectMapper = objectMapper;
+        this.storageBackend = storageBackend;
+        this.logPath = Paths.get(path).toAbsolutePath();
+        this.compactMinSize = compactMinSize;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(logPath.getParent());
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+
+        writer = new Thread(this::writeLoop, "metadata-store-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        importSidecars();
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        // Not interrupted: an interrupt during I/O would close the channel under the writer
+        queue.add(SHUTDOWN);
+        writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        synchronized (logLock) {
+            channel.close();
+        }
+    }
+
+    public Map<String, String> get(String id) {
+        Entry entry = index.get(id);
+        return entry != null ? entry.value() : null;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Durably stores the metadata of {@code id}, replacing any previous value.
+     */
+    public void put(String id, Map<String, String> metadata) throws IOException {
+        Map<String, String> value = Collections.unmodifiableMap(new LinkedHashMap<>(metadata));
+        submit(encode(OP_PUT, id, objectMapper.writeValueAsBytes(value)), id, value);
+    }
+
+    public void remove(String id) throws IOException {
+        if (index.containsKey(id)) {
+            submit(encode(OP_DELETE, id, new byte[0]), id, null);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live records once it is mostly garbage.
+     */
+    @Scheduled(initialDelayString = "${file.metadata-store.compact-interval:PT10M}",
+            fixedDelayString = "${file.metadata-store.compact-interval:PT10M}")
+    public void compactIfNeeded() {
+        try {
+            long size;
+            synchronized (logLock) {
+                size = channel.size();
+            }
+            if (size >= compactMinSize && size > 2 * (HEADER_SIZE + liveBytes.get())) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Failed to compact {}", logPath, e);
+        }
+    }
+
+    public void compact() throws IOException {
+        synchronized (logLock) {
+            long before = channel.size();
+            Path temp = logPath.resolveSibling(logPath.getFileName() + ".compact");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, ByteBuffer.wrap(MAGIC));
+                for (Map.Entry<String, Entry> e : index.entrySet()) {
+                    writeFully(out, encode(OP_PUT, e.getKey(), objectMapper.writeValueAsBytes(e.getValue().value())));
+                }
+                out.force(true);
+            }
+            try {
+                Files.move(temp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, logPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory();
+            channel.close();
+            channel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            log.info("Compacted {} from {} to {} bytes", logPath, before, channel.size());
+        }
+    }
+
+    private void submit(ByteBuffer record, String id, Map<String, String> value) throws IOException {
+        PendingWrite write = new PendingWrite(record, id, value, new CompletableFuture<>());
+        queue.add(write);
+        try {
+            write.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving metadata of " + id);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            boolean stop = batch.removeIf(write -> write == SHUTDOWN);
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+            if (stop) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Appends a batch with a single fsync and only then applies it to the index and
+     * acknowledges it. A failed batch is cut off again so later records stay readable.
+     */
+    private void commit(List<PendingWrite> batch) {
+        synchronized (logLock) {
+            long start = -1;
+            try {
+                start = channel.size();
+                channel.position(start);
+                for (PendingWrite write : batch) {
+                    writeFully(channel, write.record().duplicate());
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                log.error("Failed to append {} metadata records", batch.size(), e);
+                truncateAfterFailure(start);
+                batch.forEach(write -> write.done().completeExceptionally(e));
+                return;
+            }
+            for (PendingWrite write : batch) {
+                apply(write.id(), write.value(), write.record().remaining());
+            }
+        }
+        batch.forEach(write -> write.done().complete(null));
+    }
+
+    private void truncateAfterFailure(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            log.error("Failed to roll back {}; the tail will be dropped on the next start", logPath, e);
+        }
+    }
+
+    private void apply(String id, Map<String, String> value, int recordSize) {
+        Entry previous = value != null ? index.put(id, new Entry(value, recordSize)) : index.remove(id);
+        if (previous != null) {
+            liveBytes.addAndGet(-previous.recordSize());
+        }
+        if (value != null) {
+            liveBytes.addAndGet(recordSize);
+        }
+    }
+
+    /**
+     * Replays the log into the index and truncates it after the last intact record,
+     * dropping a write that was torn by a crash.
+     */
+    private void recover() throws IOException {
+        long length = channel.size();
+        if (length == 0) {
+            writeFully(channel, ByteBuffer.wrap(MAGIC));
+            channel.force(true);
+            syncDirectory();
+            return;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        readFully(magic, 0);
+        if (!Arrays.equals(magic.array(), MAGIC)) {
+            throw new IOException(logPath + " is not a metadata log");
+        }
+
+        long position = HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        CRC32C crc = new CRC32C();
+        int records = 0;
+        while (position + 8 <= length) {
+            header.clear();
+            readFully(header, position);
+            int payloadLength = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (payloadLength < 3 || payloadLength > MAX_RECORD_SIZE || position + 8 + payloadLength > length) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            readFully(payload, position + 8);
+            crc.reset();
+            crc.update(payload.array(), 0, payloadLength);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte op = payload.get(0);
+            int keyLength = payload.getShort(1) & 0xFFFF;
+            if (3 + keyLength > payloadLength) {
+                break;
+            }
+            String id = new String(payload.array(), 3, keyLength, StandardCharsets.UTF_8);
+            Map<String, String> value = null;
+            if (op == OP_PUT) {
+                try {
+                    value = Collections.unmodifiableMap(objectMapper.readValue(payload.array(), 3 + keyLength,
+                            payloadLength - 3 - keyLength, METADATA_TYPE));
+                } catch (IOException e) {
+                    log.warn("Unreadable metadata record for {} at offset {}", id, position, e);
+                    break;
+                }
+            } else if (op != OP_DELETE) {
+                break;
+            }
+            apply(id, value, 8 + payloadLength);
+            position += 8 + payloadLength;
+            records++;
+        }
+
+        if (position < length) {
+            log.warn("Truncating {} at offset {}: dropped {} bytes of torn or corrupt records",
+                    logPath, position, length - position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        log.info("Metadata store opened: {} records replayed, {} entries", records, index.size());
+    }
+
+    /**
+     * Moves metadata from the old per-video JSON sidecars into the store. A sidecar is
+     * deleted only after its record is durable, so an interrupted import just resumes.
+     */
+    private void importSidecars() {
+        List<StoredObject> sidecars;
+        try {
+            sidecars = storageBackend.list(SIDECAR_FOLDER + "/");
+        } catch (IOException e) {
+            log.warn("Failed to list metadata sidecars", e);
+            return;
+        }
+        int imported = 0;
+        for (StoredObject sidecar : sidecars) {
+            String name = sidecar.name();
+            if (!name.endsWith(".json")) {
+                continue;
+            }
+            String id = name.substring(0, name.length() - ".json".length());
+            try {
+                if (!index.containsKey(id)) {
+                    try (InputStream in = storageBackend.openStream(sidecar.key())) {
+                        put(id, objectMapper.readValue(in, METADATA_TYPE));
+                    }
+                    imported++;
+                }
+                storageBackend.delete(sidecar.key());
+            } catch (IOException e) {
+                log.warn("Failed to import metadata sidecar {}", sidecar.key(), e);
+            }
+        }
+        if (imported > 0) {
+            log.info("Imported {} metadata sidecars into {}", imported, logPath);
+        }
+    }
+
+    private ByteBuffer encode(byte op, String id, byte[] value) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xFFFF || 3 + key.length + value.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Metadata of " + id + " is too large");
+        }
+        int payloadLength = 3 + key.length + value.length;
+        ByteBuffer record = ByteBuffer.allocate(8 + payloadLength);
+        record.position(8);
+        record.put(op).putShort((short) key.length).put(key).put(value);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 8, payloadLength);
+        record.putInt(0, payloadLength).putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + logPath);
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private void syncDirectory() {
+        // Makes the creation or rename of the log itself durable; not supported on every platform
+        try (FileChannel directory = FileChannel.open(logPath.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot fsync directory {}", logPath.getParent(), e);
+        }
+    }
+
+    private record Entry(Map<String, String> value, int recordSize) {
+    }
+
+    private record PendingWrite(ByteBuffer record, String id, Map<String, String> value,
+                                CompletableFuture<Void> done) {
+    }
+}
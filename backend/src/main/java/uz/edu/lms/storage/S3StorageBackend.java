@@ -0,0 +1,297 @@
+package uz.edu.lms.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * S3-compatible object storage (AWS S3, MinIO, Ceph RGW, ...). Keys are used as
+ * object keys as-is; the flat S3 keyspace needs no directory sharding.
+ * <p>
+ * S3 has no hard links. {@link #link} is a server-side copy, and {@link #reference}
+ * writes an empty pointer object whose metadata names the source, which reads,
+ * stats and listings resolve. Pointer targets are cached for a minute, so an
+ * uncached read costs one extra HEAD. Limitation: pointers only resolve through this
+ * application, so serving videos/ and pdfs/ straight from the bucket (public URLs,
+ * CDN origin) or backing up those folders alone does not work; blobs/ holds the content.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+
+    private static final String POINTER_METADATA = "lms-pointer";
+
+    private final S3Client s3;
+    private final String bucket;
+
+    // Pointer source by key, "" for an ordinary object; short-lived so other instances' relinks show up
+    private final Cache<String, String> pointers = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    public S3StorageBackend(@Value("${storage.s3.endpoint:}") String endpoint,
+                            @Value("${storage.s3.region:us-east-1}") String region,
+                            @Value("${storage.s3.bucket}") String bucket,
+                            @Value("${storage.s3.access-key:}") String accessKey,
+                            @Value("${storage.s3.secret-key:}") String secretKey,
+                            @Value("${storage.s3.path-style-access:true}") boolean pathStyleAccess) {
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(pathStyleAccess)
+                        .build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        this.s3 = builder.build();
+        this.bucket = bucket;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            s3.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+        } catch (NoSuchBucketException e) {
+            s3.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+            log.info("Created storage bucket {}", bucket);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        s3.close();
+    }
+
+    /**
+     * Stats {@code key}; a pointer reports the size and modification time of its source.
+     */
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        StorageBackend.splitKey(key);
+        HeadObjectResponse head = head(key);
+        if (head == null) {
+            return Optional.empty();
+        }
+        String source = head.metadata().get(POINTER_METADATA);
+        pointers.put(key, source != null ? source : "");
+        if (source != null) {
+            head = head(source);
+            if (head == null) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new StoredObject(key, head.contentLength(), head.lastModified().toEpochMilli()));
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        return read(key, null);
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        return read(key, "bytes=" + offset + "-" + (offset + length - 1));
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        StorageBackend.splitKey(key);
+        try {
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(), RequestBody.fromFile(source));
+        } catch (S3Exception e) {
+            throw new IOException("Failed to store " + key, e);
+        }
+        pointers.invalidate(key);
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) throws IOException {
+        StorageBackend.splitKey(key);
+        try {
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(),
+                    RequestBody.fromInputStream(content, length));
+        } catch (S3Exception e) {
+            throw new IOException("Failed to store " + key, e);
+        }
+        pointers.invalidate(key);
+    }
+
+    /**
+     * Copies the content of {@code sourceKey} (of its source, for a pointer) to
+     * {@code targetKey}, which then lives on independently.
+     */
+    @Override
+    public void link(String sourceKey, String targetKey) throws IOException {
+        StorageBackend.splitKey(sourceKey);
+        StorageBackend.splitKey(targetKey);
+        String source = resolve(sourceKey);
+        try {
+            s3.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucket)
+                    .sourceKey(source)
+                    .destinationBucket(bucket)
+                    .destinationKey(targetKey)
+                    .build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to link " + sourceKey + " to " + targetKey, e);
+        }
+        pointers.invalidate(targetKey);
+    }
+
+    /**
+     * Writes {@code targetKey} as an empty pointer object to {@code sourceKey}, so
+     * deduplicated entries take no space of their own.
+     */
+    @Override
+    public void reference(String sourceKey, String targetKey) throws IOException {
+        StorageBackend.splitKey(sourceKey);
+        StorageBackend.splitKey(targetKey);
+        String source = resolve(sourceKey);
+        try {
+            s3.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(targetKey)
+                            .metadata(Map.of(POINTER_METADATA, source))
+                            .build(),
+                    RequestBody.empty());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to link " + sourceKey + " to " + targetKey, e);
+        }
+        pointers.put(targetKey, source);
+    }
+
+    /**
+     * Deletes {@code key} itself; for a pointer, its source is left alone.
+     */
+    @Override
+    public boolean delete(String key) throws IOException {
+        StorageBackend.splitKey(key);
+        boolean existed = head(key) != null;
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to delete " + key, e);
+        }
+        pointers.invalidate(key);
+        return existed;
+    }
+
+    @Override
+    public List<StoredObject> list(String prefix) throws IOException {
+        List<StoredObject> listed = new ArrayList<>();
+        try {
+            s3.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build())
+                    .contents()
+                    .forEach(object -> listed.add(new StoredObject(
+                            object.key(), object.size(), object.lastModified().toEpochMilli())));
+        } catch (S3Exception e) {
+            throw new IOException("Failed to list " + prefix, e);
+        }
+        List<StoredObject> objects = new ArrayList<>(listed.size());
+        for (StoredObject object : listed) {
+            String source = object.size() == 0 ? resolve(object.key()) : object.key();
+            HeadObjectResponse head = source.equals(object.key()) ? null : head(source);
+            // Pointers are empty objects; report their source's size like stat does
+            objects.add(head == null ? object
+                    : new StoredObject(object.key(), head.contentLength(), head.lastModified().toEpochMilli()));
+        }
+        return objects;
+    }
+
+    private InputStream read(String key, String range) throws IOException {
+        StorageBackend.splitKey(key);
+        for (int attempt = 0; ; attempt++) {
+            String source = resolve(key);
+            try {
+                ResponseInputStream<GetObjectResponse> in = s3.getObject(
+                        GetObjectRequest.builder().bucket(bucket).key(source).range(range).build());
+                if (attempt > 0 || !in.response().metadata().containsKey(POINTER_METADATA)) {
+                    return in;
+                }
+                // Became a pointer since it was cached as an ordinary object
+                in.abort();
+            } catch (NoSuchKeyException e) {
+                if (attempt > 0 || source.equals(key)) {
+                    throw new IOException("Failed to read " + key, e);
+                }
+                // Pointed elsewhere by another instance since it was cached
+            } catch (S3Exception e) {
+                // A range of an empty pointer object cached as an ordinary object
+                if (attempt > 0 || e.statusCode() != 416) {
+                    throw new IOException("Failed to read " + key, e);
+                }
+            }
+            pointers.invalidate(key);
+        }
+    }
+
+    /**
+     * Returns the key holding the content of {@code key}: its source for a pointer,
+     * else the key itself.
+     */
+    private String resolve(String key) throws IOException {
+        String source = pointers.getIfPresent(key);
+        if (source == null) {
+            HeadObjectResponse head = head(key);
+            if (head == null) {
+                return key;
+            }
+            source = head.metadata().getOrDefault(POINTER_METADATA, "");
+            pointers.put(key, source);
+        }
+        return source.isEmpty() ? key : source;
+    }
+
+    private HeadObjectResponse head(String key) throws IOException {
+        try {
+            return s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Failed to stat " + key, e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package uz.edu.lms.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage for uploaded media, addressed by keys of the form "folder/name"
+ * (e.g. "videos/3f2a....mp4"). Implementations must support streaming reads
+ * and writes and ranged reads without buffering whole objects in memory.
+ */
+public interface StorageBackend {
+
+    Optional<StoredObject> stat(String key) throws IOException;
+
+    default boolean exists(String key) throws IOException {
+        return stat(key).isPresent();
+    }
+
+    InputStream openStream(String key) throws IOException;
+
+    InputStream openRange(String key, long offset, long length) throws IOException;
+
+    /**
+     * Returns the local file backing {@code key}, if any, so callers can use
+     * zero-copy transfers. Remote backends return empty.
+     */
+    Optional<Path> localPath(String key);
+
+    /**
+     * Stores the local file {@code source} under {@code key}, replacing any existing
+     * object. The backend takes ownership of {@code source} and removes it.
+     */
+    void put(String key, Path source) throws IOException;
+
+    void write(String key, InputStream content, long length) throws IOException;
+
+    /**
+     * Makes {@code targetKey} refer to the same content as {@code sourceKey},
+     * sharing storage where the backend supports it. An existing target is
+     * replaced atomically, so readers see either the old or the new content.
+     */
+    void link(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * Like {@link #link}, but the target may be stored as a pointer to the source, so
+     * it follows later writes to the source and breaks once the source is deleted. For
+     * callers that own the source's lifetime, like the blob store; backends with hard
+     * links just link.
+     */
+    default void reference(String sourceKey, String targetKey) throws IOException {
+        link(sourceKey, targetKey);
+    }
+
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Lists objects whose key starts with {@code prefix}, e.g. "videos/" or "videos/3f2a".
+     */
+    List<StoredObject> list(String prefix) throws IOException;
+
+    static String[] splitKey(String key) {
+        int slash = key == null ? -1 : key.indexOf('/');
+        if (slash <= 0 || slash == key.length() - 1 || key.indexOf('/', slash + 1) >= 0
+                || key.contains("..") || key.contains("\\")) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return new String[]{key.substring(0, slash), key.substring(slash + 1)};
+    }
+}
@@ -0,0 +1,8 @@
+package uz.edu.lms.storage;
+
+public record StoredObject(String key, long size, long lastModified) {
+
+    public String name() {
+        return key.substring(key.indexOf('/') + 1);
+    }
+}
@@ -0,0 +1,22 @@
+-- Moves an existing PostgreSQL schema from identity columns to the pooled id sequences
+-- the entities use (allocationSize 50). Idempotent; run it once before starting this
+-- version against a database that already holds data. Tables that do not exist yet
+-- only get their sequence; Hibernate creates them.
+DO $$
+DECLARE
+    t text;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['users', 'courses', 'modules', 'video_lessons', 'quizzes', 'questions',
+            'question_options', 'quiz_attempts', 'answers', 'enrollments', 'media_jobs', 'stored_files',
+            'storage_usage', 'upload_origins']
+    LOOP
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I START WITH 1 INCREMENT BY 50', t || '_seq');
+        IF to_regclass(t) IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', t);
+            -- The pooled optimizer treats each nextval as the top of a block of 50 ids, so the
+            -- sequence has to sit at least 50 above the highest existing id
+            EXECUTE format('SELECT setval(%L, GREATEST((SELECT COALESCE(MAX(id), 0) FROM %I) + 50, '
+                    || '(SELECT last_value FROM %I)))', t || '_seq', t, t || '_seq');
+        END IF;
+    END LOOP;
+END $$;
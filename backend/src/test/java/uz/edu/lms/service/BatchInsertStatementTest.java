@@ -0,0 +1,176 @@
+package uz.edu.lms.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import uz.edu.lms.entity.Answer;
+import uz.edu.lms.entity.Course;
+import uz.edu.lms.entity.Enrollment;
+import uz.edu.lms.entity.Module;
+import uz.edu.lms.entity.Question;
+import uz.edu.lms.entity.QuestionOption;
+import uz.edu.lms.entity.Quiz;
+import uz.edu.lms.entity.QuizAttempt;
+import uz.edu.lms.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips of the write paths that insert many rows. Ids come from pooled
+ * sequences and inserts are batched (hibernate.jdbc.batch_size 50), so the statement
+ * count is the reads before the insert, one sequence call per 50 ids and one
+ * prepared insert per table, however many rows are written. Row by row, the same
+ * calls took 54 and 503 statements.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({QuizService.class, QuizGradingService.class, EnrollmentService.class})
+class BatchInsertStatementTest {
+
+    private static final int QUESTIONS = 50;
+    private static final int STUDENTS = 500;
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private LessonCache lessonCache;
+
+    private Statistics statistics;
+    private Course course;
+
+    @BeforeEach
+    void setUp() {
+        course = entityManager.persist(Course.builder()
+                .title("Course")
+                .active(true)
+                .createdAt(LocalDateTime.now())
+                .build());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void submittingFiftyAnswersInsertsThemInBatches() {
+        Module module = entityManager.persist(Module.builder()
+                .title("Module")
+                .course(course)
+                .orderNumber(1)
+                .createdAt(LocalDateTime.now())
+                .build());
+        Quiz quiz = entityManager.persist(Quiz.builder()
+                .title("Quiz")
+                .module(module)
+                .passingScore(70)
+                .createdAt(LocalDateTime.now())
+                .build());
+        List<Long> questionIds = new ArrayList<>();
+        List<Long> correctOptionIds = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            Question question = entityManager.persist(Question.builder()
+                    .quiz(quiz)
+                    .questionText("Question " + i)
+                    .type(Question.QuestionType.MULTIPLE_CHOICE)
+                    .points(1)
+                    .orderNumber(i)
+                    .build());
+            QuestionOption correct = entityManager.persist(option(question, "Right", true, 0));
+            entityManager.persist(option(question, "Wrong", false, 1));
+            questionIds.add(question.getId());
+            correctOptionIds.add(correct.getId());
+        }
+        User student = entityManager.persist(user("student@test.com"));
+        entityManager.flush();
+        entityManager.clear();
+        // Compile the answer key up front; it is cached across submissions
+        quizService.submitQuiz(quiz.getId(), student.getId(), answers(questionIds, correctOptionIds));
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        QuizAttempt attempt = quizService.submitQuiz(quiz.getId(), student.getId(),
+                answers(questionIds, correctOptionIds));
+        entityManager.flush();
+
+        assertThat(attempt.getScore()).isEqualTo(QUESTIONS);
+        // The attempt and its answers; the answer-option links are collection rows
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1 + QUESTIONS);
+        // Quiz and student reads, the attempt and answer sequences, and the inserts of
+        // the attempt, the answers and the answer-option links
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(7);
+    }
+
+    @Test
+    void enrollingFiveHundredStudentsInsertsThemInBatches() {
+        List<Long> studentIds = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            studentIds.add(entityManager.persist(user("student" + i + "@test.com")).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        List<Enrollment> enrollments = enrollmentService.enrollStudents(course.getId(), studentIds);
+        entityManager.flush();
+
+        assertThat(enrollments).hasSize(STUDENTS);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(STUDENTS);
+        // Course, enrollments and students read, a sequence call per 50 ids, and at most
+        // two prepared inserts shared by all ten batches
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3 + STUDENTS / 50 + 2);
+    }
+
+    private List<Answer> answers(List<Long> questionIds, List<Long> correctOptionIds) {
+        EntityManager em = entityManager.getEntityManager();
+        List<Answer> answers = new ArrayList<>();
+        for (int i = 0; i < questionIds.size(); i++) {
+            answers.add(Answer.builder()
+                    .question(em.getReference(Question.class, questionIds.get(i)))
+                    .selectedOptions(new ArrayList<>(List.of(
+                            em.getReference(QuestionOption.class, correctOptionIds.get(i)))))
+                    .correct(false)
+                    .build());
+        }
+        return answers;
+    }
+
+    private static QuestionOption option(Question question, String text, boolean correct, int orderNumber) {
+        return QuestionOption.builder()
+                .question(question)
+                .optionText(text)
+                .isCorrect(correct)
+                .orderNumber(orderNumber)
+                .build();
+    }
+
+    private static User user(String email) {
+        return User.builder()
+                .email(email)
+                .password("password")
+                .firstName("Test")
+                .lastName("Student")
+                .role(User.Role.STUDENT)
+                .active(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
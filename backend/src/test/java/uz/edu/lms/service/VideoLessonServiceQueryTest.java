@@ -0,0 +1,136 @@
+package uz.edu.lms.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import uz.edu.lms.dto.CursorPage;
+import uz.edu.lms.dto.VideoLessonDTO;
+import uz.edu.lms.entity.Course;
+import uz.edu.lms.entity.Module;
+import uz.edu.lms.entity.VideoLesson;
+import uz.edu.lms.repository.LessonSort;
+import uz.edu.lms.security.MediaUrlSigner;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lesson reads must stay one SQL statement each, whatever the number of lessons.
+ * The lesson cache is mocked to always load, so every call reaches the database.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(VideoLessonService.class)
+class VideoLessonServiceQueryTest {
+
+    private static final int LESSONS = 5;
+
+    @Autowired
+    private VideoLessonService videoLessonService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private LessonCache lessonCache;
+
+    @MockBean
+    private MediaUrlSigner mediaUrlSigner;
+
+    @MockBean
+    private Mp4FaststartService mp4FaststartService;
+
+    @MockBean
+    private LessonSearchService lessonSearchService;
+
+    @MockBean
+    private LessonTranscriptService lessonTranscriptService;
+
+    @MockBean
+    private OrphanCollectorService orphanCollectorService;
+
+    private Statistics statistics;
+    private Long courseId;
+    private Long lessonId;
+
+    @BeforeEach
+    void setUp() {
+        when(lessonCache.get(anyString(), any(), any())).thenAnswer(invocation -> {
+            Supplier<?> loader = invocation.getArgument(2);
+            return loader.get();
+        });
+
+        Course course = entityManager.persist(Course.builder()
+                .title("Course")
+                .active(true)
+                .createdAt(LocalDateTime.now())
+                .build());
+        for (int i = 1; i <= LESSONS; i++) {
+            Module module = entityManager.persist(Module.builder()
+                    .title("Module " + i)
+                    .course(course)
+                    .orderNumber(i)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+            VideoLesson lesson = entityManager.persist(VideoLesson.builder()
+                    .title("Lesson " + i)
+                    .module(module)
+                    .videoUrl("videos/lesson-" + i + ".mp4")
+                    .videoType(VideoLesson.VideoType.UPLOAD)
+                    .build());
+            lessonId = lesson.getId();
+        }
+        courseId = course.getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getLessonByIdRunsOneStatement() {
+        VideoLessonDTO lesson = videoLessonService.getLessonById(lessonId);
+
+        assertThat(lesson.getModuleId()).isNotNull();
+        assertThat(lesson.getCourseId()).isEqualTo(courseId);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getLessonsByCourseIdRunsOneStatement() {
+        List<VideoLessonDTO> lessons = videoLessonService.getLessonsByCourseId(courseId, null);
+
+        assertThat(lessons).hasSize(LESSONS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void pagedListingRunsOneStatementPerPage() {
+        CursorPage<VideoLessonDTO> first = videoLessonService.getLessons(
+                LessonSort.MODULE_ORDER, null, 2, courseId, null, null, null);
+        assertThat(first.getItems()).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        CursorPage<VideoLessonDTO> second = videoLessonService.getLessons(
+                LessonSort.MODULE_ORDER, first.getNextCursor(), 2, courseId, null, null, null);
+        assertThat(second.getItems()).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
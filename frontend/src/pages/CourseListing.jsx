@@ -12,6 +12,11 @@ function CourseListing() {
   const [loading, setLoading] = useState(true)
   const [searchTerm, setSearchTerm] = useState('')
   const [currentPage, setCurrentPage] = useState(1)
+  // Cursor that loads each visited page; index 0 is the first page
+  const [pageCursors, setPageCursors] = useState([null])
+  const [nextCursor, setNextCursor] = useState(null)
+  // Total number of matches while searching; search results are paged by number
+  const [searchTotal, setSearchTotal] = useState(0)
   const lessonsPerPage = 6
 
   // Filter states
@@ -21,18 +26,30 @@ function CourseListing() {
   const [selectedLevels, setSelectedLevels] = useState([])
 
   useEffect(() => {
-    loadLessons()
-  }, [])
+    if (!searchTerm.trim()) {
+      setPageCursors([null])
+      loadLessons(1, [null])
+      return
+    }
+    // Wait for the user to stop typing before querying the search index
+    const timer = setTimeout(() => searchLessons(1), 300)
+    return () => clearTimeout(timer)
+  }, [searchTerm])
 
   useEffect(() => {
     filterLessons()
-  }, [lessons, searchTerm, selectedCategories, selectedInstructors, selectedPrices, selectedLevels])
+  }, [lessons, selectedCategories, selectedInstructors, selectedPrices, selectedLevels])
 
-  const loadLessons = async () => {
+  const loadLessons = async (page = 1, cursors = pageCursors) => {
     try {
-      const response = await api.get('/lessons')
-      setLessons(response.data)
-      setFilteredLessons(response.data)
+      setLoading(true)
+      const response = await api.get('/lessons', {
+        params: { limit: lessonsPerPage, cursor: cursors[page - 1] || undefined },
+      })
+      setLessons(response.data.items)
+      setFilteredLessons(response.data.items)
+      setNextCursor(response.data.nextCursor)
+      setCurrentPage(page)
     } catch (error) {
       console.error('Error loading lessons:', error)
     } finally {
@@ -40,20 +57,27 @@ function CourseListing() {
     }
   }
 
+  const searchLessons = async (page) => {
+    try {
+      setLoading(true)
+      const response = await api.get('/lessons/search', {
+        params: { q: searchTerm, page: page - 1, size: lessonsPerPage },
+      })
+      setLessons(response.data.items)
+      setSearchTotal(response.data.total)
+      setCurrentPage(page)
+    } catch (error) {
+      console.error('Error searching lessons:', error)
+    } finally {
+      setLoading(false)
+    }
+  }
+
   const filterLessons = () => {
     let filtered = [...lessons]
 
-    // Search filter
-    if (searchTerm) {
-      filtered = filtered.filter(lesson =>
-        lesson.title.toLowerCase().includes(searchTerm.toLowerCase()) ||
-        lesson.description?.toLowerCase().includes(searchTerm.toLowerCase())
-      )
-    }
-
     // Add more filters here as needed
     setFilteredLessons(filtered)
-    setCurrentPage(1)
   }
 
   const toggleCategory = (category) => {
@@ -64,13 +88,23 @@ function CourseListing() {
     )
   }
 
-  // Pagination
-  const indexOfLastLesson = currentPage * lessonsPerPage
-  const indexOfFirstLesson = indexOfLastLesson - lessonsPerPage
-  const currentLessons = filteredLessons.slice(indexOfFirstLesson, indexOfLastLesson)
-  const totalPages = Math.ceil(filteredLessons.length / lessonsPerPage)
+  // Pagination: the server returns one page at a time, so only neighbouring pages are reachable
+  const currentLessons = filteredLessons
+
+  const searching = searchTerm.trim() !== ''
+  const hasNextPage = searching ? currentPage * lessonsPerPage < searchTotal : !!nextCursor
+
+  const goToNextPage = () => {
+    if (searching) {
+      searchLessons(currentPage + 1)
+      return
+    }
+    const cursors = [...pageCursors.slice(0, currentPage), nextCursor]
+    setPageCursors(cursors)
+    loadLessons(currentPage + 1, cursors)
+  }
 
-  const paginate = (pageNumber) => setCurrentPage(pageNumber)
+  const goToPreviousPage = () => (searching ? searchLessons(currentPage - 1) : loadLessons(currentPage - 1))
 
   return (
     <div className="min-h-screen bg-gray-50">
@@ -242,10 +276,10 @@ function CourseListing() {
                 </div>
 
                 {/* Pagination */}
-                {totalPages > 1 && (
+                {(currentPage > 1 || hasNextPage) && (
                   <div className="flex justify-center items-center gap-2">
                     <button
-                      onClick={() => paginate(currentPage - 1)}
+                      onClick={goToPreviousPage}
                       disabled={currentPage === 1}
                       className="p-2 rounded hover:bg-gray-100 disabled:opacity-50 disabled:cursor-not-allowed"
                     >
@@ -254,23 +288,13 @@ function CourseListing() {
                       </svg>
                     </button>
 
-                    {[...Array(totalPages)].map((_, index) => (
-                      <button
-                        key={index + 1}
-                        onClick={() => paginate(index + 1)}
-                        className={`w-10 h-10 rounded-full font-medium ${
-                          currentPage === index + 1
-                            ? 'bg-gray-900 text-white'
-                            : 'bg-white text-gray-700 hover:bg-gray-100'
-                        }`}
-                      >
-                        {index + 1}
-                      </button>
-                    ))}
+                    <span className="w-10 h-10 rounded-full font-medium bg-gray-900 text-white flex items-center justify-center">
+                      {currentPage}
+                    </span>
 
                     <button
-                      onClick={() => paginate(currentPage + 1)}
-                      disabled={currentPage === totalPages}
+                      onClick={goToNextPage}
+                      disabled={!hasNextPage}
                       className="p-2 rounded hover:bg-gray-100 disabled:opacity-50 disabled:cursor-not-allowed"
                     >
                       <svg className="h-5 w-5" fill="none" viewBox="0 0 24 24" stroke="currentColor">
@@ -16,8 +16,8 @@ function StudentDashboard() {
 
   const loadLessons = async () => {
     try {
-      const response = await api.get('/lessons')
-      setLessons(response.data)
+      const response = await api.get('/lessons', { params: { limit: 6 } })
+      setLessons(response.data.items)
     } catch (error) {
       console.error('Error loading lessons:', error)
     } finally {
@@ -65,7 +65,9 @@ function StudentLesson() {
     if (lesson.pdfUrl) {
       const pdfFilename = lesson.pdfUrl.split('/')[1]
       const link = document.createElement('a')
-      link.href = `${BASE_URL}/api/videos/pdf/${pdfFilename}`
+      link.href = lesson.signedPdfUrl
+        ? `${BASE_URL}${lesson.signedPdfUrl}`
+        : `${BASE_URL}/api/videos/pdf/${pdfFilename}`
       link.download = lesson.pdfFileName || pdfFilename
       link.target = '_blank'
       document.body.appendChild(link)
@@ -205,7 +207,9 @@ function StudentLesson() {
                 controlsList="nodownload"
               >
                 <source
-                  src={`${BASE_URL}/api/videos/stream/${lesson.videoUrl.split('/')[1]}`}
+                  src={lesson.signedVideoUrl
+                    ? `${BASE_URL}${lesson.signedVideoUrl}`
+                    : `${BASE_URL}/api/videos/stream/${lesson.videoUrl.split('/')[1]}`}
                 />
                 Your browser does not support the video player.
               </video>
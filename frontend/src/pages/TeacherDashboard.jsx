@@ -12,8 +12,9 @@ function TeacherDashboard() {
 
   const loadStats = async () => {
     try {
-      const lessonsResponse = await api.get('/lessons')
-      setStats(prev => ({ ...prev, lessons: lessonsResponse.data.length }))
+      const lessonsResponse = await api.get('/lessons', { params: { limit: 100 } })
+      const { items, nextCursor } = lessonsResponse.data
+      setStats(prev => ({ ...prev, lessons: nextCursor ? `${items.length}+` : items.length }))
     } catch (error) {
       console.error('Error loading stats:', error)
     }
@@ -9,6 +9,8 @@ function TeacherLessons() {
   const navigate = useNavigate()
   const { isAuthenticated, user } = useAuthStore()
   const [lessons, setLessons] = useState([])
+  const [nextCursor, setNextCursor] = useState(null)
+  const [loadingMore, setLoadingMore] = useState(false)
   const [loading, setLoading] = useState(true)
   const [showUploadModal, setShowUploadModal] = useState(false)
   const [showDeleteModal, setShowDeleteModal] = useState(false)
@@ -29,8 +31,9 @@ function TeacherLessons() {
   const loadLessons = async () => {
     try {
       setLoading(true)
-      const response = await api.get('/lessons')
-      setLessons(response.data)
+      const response = await api.get('/lessons', { params: { limit: 24 } })
+      setLessons(response.data.items)
+      setNextCursor(response.data.nextCursor)
     } catch (error) {
       console.error('Error loading lessons:', error)
     } finally {
@@ -38,6 +41,19 @@ function TeacherLessons() {
     }
   }
 
+  const loadMoreLessons = async () => {
+    try {
+      setLoadingMore(true)
+      const response = await api.get('/lessons', { params: { limit: 24, cursor: nextCursor } })
+      setLessons(prev => [...prev, ...response.data.items])
+      setNextCursor(response.data.nextCursor)
+    } catch (error) {
+      console.error('Error loading lessons:', error)
+    } finally {
+      setLoadingMore(false)
+    }
+  }
+
   const handleFileChange = (e) => {
     const { name, files } = e.target
     if (files && files[0]) {
@@ -55,7 +71,7 @@ function TeacherLessons() {
     data.append('file', file)
 
     const response = await api.post(
-      `/files/upload/${type}`,
+      `/files/upload/${type}?purpose=lesson`,
       data,
       {
         headers: { 'Content-Type': 'multipart/form-data' },
@@ -214,7 +230,7 @@ function TeacherLessons() {
       <div className="max-w-7xl mx-auto px-4 sm:px-6 lg:px-8 py-8">
         <div className="grid grid-cols-2 md:grid-cols-4 gap-6 mb-8">
           <div className="bg-white rounded-lg shadow-sm p-6 text-center">
-            <p className="text-3xl font-bold text-orange-600 mb-2">{lessons.length}</p>
+            <p className="text-3xl font-bold text-orange-600 mb-2">{lessons.length}{nextCursor ? '+' : ''}</p>
             <p className="text-sm text-gray-600 font-medium">Total Lessons</p>
           </div>
           <div className="bg-white rounded-lg shadow-sm p-6 text-center">
@@ -330,6 +346,18 @@ function TeacherLessons() {
             ))}
           </div>
         )}
+
+        {!loading && nextCursor && (
+          <div className="flex justify-center mt-8">
+            <button
+              onClick={loadMoreLessons}
+              disabled={loadingMore}
+              className="px-6 py-2 bg-white border border-gray-300 rounded-lg text-gray-700 font-medium hover:bg-gray-50 disabled:opacity-50"
+            >
+              {loadingMore ? 'Loading...' : 'Load more'}
+            </button>
+          </div>
+        )}
       </div>
 
       {/* Upload Modal */}